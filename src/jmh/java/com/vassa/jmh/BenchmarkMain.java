@@ -0,0 +1,31 @@
+package com.vassa.jmh;
+
+import org.openjdk.jmh.Main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Entry point of benchmarks.jar: plain JMH, plus the gc profiler and JSON results unless the command line
+// already chooses a profiler or a result file. Run with -h for the JMH options.
+public class BenchmarkMain {
+
+    private static final String RESULT_FILE = "jmh-result.json";
+
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        if(!arguments.contains("-prof")) {
+            arguments.add("-prof");
+            arguments.add("gc");
+        }
+        if(!arguments.contains("-rf")) {
+            arguments.add("-rf");
+            arguments.add("json");
+        }
+        if(!arguments.contains("-rff")) {
+            arguments.add("-rff");
+            arguments.add(RESULT_FILE);
+        }
+        Main.main(arguments.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,48 @@
+package com.vassa.jmh;
+
+import com.vassa.client.Payload;
+import com.vassa.client.PayloadDigest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// The digest header ApiClient sends, over JSON payloads of growing size.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DigestBenchmark {
+
+    @Param({"0", "256", "4096", "65536", "1048576"})
+    public int payloadBytes;
+
+    @Param
+    public PayloadDigest digest;
+
+    private Payload payload;
+
+    @Setup
+    public void setUp() {
+        char[] value = new char[Math.max(0, payloadBytes - 8)];
+        Arrays.fill(value, 'x');
+        payload = Payload.of(payloadBytes == 0 ? "" : "{\"a\":\"" + new String(value) + "\"}");
+    }
+
+    @Benchmark
+    public String digest() {
+        return payload.digest(digest);
+    }
+}
@@ -0,0 +1,54 @@
+package com.vassa.jmh;
+
+import com.vassa.domain.Algorithm;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.spec.ECGenParameterSpec;
+
+// Keys of the sizes used in production for each algorithm family.
+final class Keys {
+
+    private static final int RSA_BITS = 2048;
+    private static final int DSA_BITS = 2048;
+    private static final int HMAC_BYTES = 32;
+
+    private Keys() {
+    }
+
+    static Key forAlgorithm(final Algorithm algorithm) throws GeneralSecurityException {
+        final String jvmName = algorithm.getJvmName();
+        if(Mac.class.equals(algorithm.getType())) {
+            final byte[] secret = new byte[HMAC_BYTES];
+            new SecureRandom().nextBytes(secret);
+            return new SecretKeySpec(secret, jvmName);
+        } else if(algorithm == Algorithm.ED25519) {
+            return KeyPairGenerator.getInstance("Ed25519").generateKeyPair().getPrivate();
+        } else if(jvmName.contains("ECDSA")) {
+            // the curve matches the strength of the hash, as ecdsa-sha384 is used with P-384
+            final KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec(curve(jvmName)));
+            return generator.generateKeyPair().getPrivate();
+        } else if(jvmName.contains("DSA")) {
+            final KeyPairGenerator generator = KeyPairGenerator.getInstance("DSA");
+            generator.initialize(DSA_BITS);
+            return generator.generateKeyPair().getPrivate();
+        }
+        final KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(RSA_BITS);
+        return generator.generateKeyPair().getPrivate();
+    }
+
+    private static String curve(final String jvmName) {
+        if(jvmName.contains("384")) {
+            return "secp384r1";
+        } else if(jvmName.contains("512")) {
+            return "secp521r1";
+        }
+        return "secp256r1";
+    }
+}
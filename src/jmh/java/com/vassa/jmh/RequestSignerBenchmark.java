@@ -0,0 +1,69 @@
+package com.vassa.jmh;
+
+import com.vassa.domain.Algorithm;
+import com.vassa.security.RequestSigner;
+import org.apache.http.client.methods.HttpPost;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// A new HttpPost per call, as ApiClient builds one per request. signAll is per batch of BATCH requests.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestSignerBenchmark {
+
+    private static final String URL = "https://iaas.example.com/20160918/instances?compartmentId=ocid1.compartment.oc1..aaaa";
+    private static final int BATCH = 64;
+    private static final String DIGEST = "0b5c8b6a2a2a1e0f8f6d2e5c0b6f6e4a7a8b9c0d1e2f3a4b5c6d7e8f9a0b1c2d";
+
+    @Param({"rsa-sha256", "ecdsa-sha256", "hmac-sha256"})
+    public String algorithm;
+
+    // 0 disables the signature cache, with a cache every call after the first in a second is a hit
+    @Param({"0", "1024"})
+    public long signatureCacheSize;
+
+    private RequestSigner signer;
+
+    @Setup
+    public void setUp() throws Exception {
+        Algorithm value = Algorithm.get(algorithm);
+        signer = new RequestSigner("bench-key", Keys.forAlgorithm(value), value, signatureCacheSize);
+    }
+
+    @Benchmark
+    public HttpPost signRequest() {
+        HttpPost request = new HttpPost(URL);
+        request.setHeader("digest", DIGEST);
+        signer.signRequest(request);
+        return request;
+    }
+
+    @Benchmark
+    public List<HttpPost> signAll() {
+        List<HttpPost> requests = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            HttpPost request = new HttpPost(URL);
+            request.setHeader("digest", DIGEST);
+            requests.add(request);
+        }
+        signer.signAll(requests);
+        return requests;
+    }
+}
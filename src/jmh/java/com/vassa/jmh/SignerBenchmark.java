@@ -0,0 +1,64 @@
+package com.vassa.jmh;
+
+import com.vassa.domain.Algorithm;
+import com.vassa.security.SignatureAuth;
+import com.vassa.security.Signer;
+import com.vassa.security.SigningTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Every Algorithm value; the ones the running JDK lacks (ed25519 before JDK 15, SHA3 with DSA) fail in setup
+// and JMH moves on to the next parameter.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SignerBenchmark {
+
+    private static final List<String> HEADERS = Arrays.asList(SigningTemplate.REQUEST_TARGET, "date", "digest");
+    private static final String METHOD = "POST";
+    private static final String URI = "/20160918/instances?compartmentId=ocid1.compartment.oc1..aaaa";
+
+    @Param
+    public Algorithm algorithm;
+
+    private Signer signer;
+    private Map<String, String> headers;
+
+    @Setup
+    public void setUp() throws Exception {
+        signer = new Signer(Keys.forAlgorithm(algorithm),
+                new SignatureAuth("bench-key", algorithm.getPortableName(), HEADERS));
+        headers = new HashMap<>();
+        headers.put("date", "2021-01-01T00:00:00Z");
+        headers.put("digest", "0b5c8b6a2a2a1e0f8f6d2e5c0b6f6e4a7a8b9c0d1e2f3a4b5c6d7e8f9a0b1c2d");
+    }
+
+    @Benchmark
+    public SignatureAuth sign() throws IOException {
+        return signer.sign(METHOD, URI, headers);
+    }
+
+    @Benchmark
+    public String signAuthorization() {
+        return signer.signAuthorization(METHOD, URI, headers::get);
+    }
+}
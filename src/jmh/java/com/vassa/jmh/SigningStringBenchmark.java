@@ -0,0 +1,57 @@
+package com.vassa.jmh;
+
+import com.vassa.security.Signatures;
+import com.vassa.security.SigningTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SigningStringBenchmark {
+
+    private static final List<String> REQUIRED = Arrays.asList(SigningTemplate.REQUEST_TARGET, "date", "digest");
+
+    private Map<String, String> lowercase;
+    private Map<String, String> mixedCase;
+
+    @Setup
+    public void setUp() {
+        lowercase = new TreeMap<>();
+        lowercase.put("date", "2021-01-01T00:00:00Z");
+        lowercase.put("digest", "0b5c8b6a2a2a1e0f8f6d2e5c0b6f6e4a7a8b9c0d1e2f3a4b5c6d7e8f9a0b1c2d");
+        lowercase.put("content-type", "application/json");
+        // headers as they come from HttpClient, found through the case-insensitive fallback
+        mixedCase = new TreeMap<>();
+        mixedCase.put("Date", "2021-01-01T00:00:00Z");
+        mixedCase.put("Digest", "0b5c8b6a2a2a1e0f8f6d2e5c0b6f6e4a7a8b9c0d1e2f3a4b5c6d7e8f9a0b1c2d");
+        mixedCase.put("Content-Type", "application/json");
+    }
+
+    @Benchmark
+    public String lowercaseHeaders() {
+        return Signatures.createSigningString(REQUIRED, "POST", "/20160918/instances", lowercase);
+    }
+
+    @Benchmark
+    public String mixedCaseHeaders() {
+        return Signatures.createSigningString(REQUIRED, "POST", "/20160918/instances", mixedCase);
+    }
+}
@@ -1,15 +1,36 @@
 package com.vassa;
 
+import com.vassa.batch.BatchCommand;
+import com.vassa.bench.BenchCommand;
+import com.vassa.bench.H2cTestServer;
 import com.vassa.client.ApiClient;
+import com.vassa.client.ClientConfig;
 import com.vassa.client.HttpMethod;
+import com.vassa.client.Payload;
+import com.vassa.client.ResultWriter;
+import com.vassa.corpus.CorpusCommand;
+import com.vassa.corpus.ReplayCommand;
+import com.vassa.daemon.DaemonClient;
+import com.vassa.daemon.DaemonCommand;
+import com.vassa.distributed.CoordinatorCommand;
+import com.vassa.distributed.WorkerCommand;
+import com.vassa.domain.AlgorithmRegistry;
+import com.vassa.metrics.FlightEvents;
+import com.vassa.metrics.Metrics;
+import com.vassa.metrics.PrometheusExporter;
+import com.vassa.mock.MockServerCommand;
+import com.vassa.util.CommandLine;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
 
 public class HttpSignature {
 
-    public static void main(String[] args) throws IOException {
+    public static void main(String[] args) throws Exception {
         long t = System.currentTimeMillis();
         System.out.println("\nStart script\n");
         if(args.length == 0) {
@@ -17,18 +38,104 @@ public class HttpSignature {
             System.exit(1);
         }
 
+        PrometheusExporter exporter = startMetrics(new CommandLine(args, 0));
+        Closeable recording = startRecording(new CommandLine(args, 0));
+        switch(args[0].toLowerCase()) {
+            case "providers":
+                AlgorithmRegistry.probe();
+                AlgorithmRegistry.report().forEach(System.out::println);
+                break;
+            case "bench":
+                BenchCommand.run(args, System.out);
+                break;
+            case "batch":
+                BatchCommand.run(args, System.out);
+                break;
+            case "corpus":
+                CorpusCommand.run(args, System.out);
+                break;
+            case "replay":
+                ReplayCommand.run(args, System.out);
+                break;
+            case "worker":
+                WorkerCommand.run(args, System.out);
+                break;
+            case "coordinate":
+                CoordinatorCommand.run(args, System.out);
+                break;
+            case "daemon":
+                DaemonCommand.run(args, System.out);
+                break;
+            case "client":
+                DaemonClient.run(args, System.out);
+                break;
+            case "h2c-server":
+                H2cTestServer.run(args, System.out);
+                break;
+            case "mock-server":
+                MockServerCommand.run(args, System.out);
+                break;
+            default:
+                runSingleRequest(args);
+        }
+        if(Metrics.isEnabled()) {
+            System.out.println();
+            Metrics.print(System.out);
+        }
+        if(exporter != null) {
+            exporter.close();
+        }
+        if(recording != null) {
+            recording.close();
+        }
+        System.out.println(String.format("\nEnd script in %s ms", System.currentTimeMillis() - t));
+    }
+
+    // --metrics times every request phase and registers the MBeans, --metrics-port=N also serves /metrics, on
+    // loopback unless --metrics-bind=address says otherwise
+    private static PrometheusExporter startMetrics(CommandLine commandLine) throws IOException {
+        if(!commandLine.has("metrics") && !commandLine.has("metrics-port")) {
+            return null;
+        }
+        Metrics.enable();
+        Metrics.registerMBeans();
+        if(!commandLine.has("metrics-port")) {
+            return null;
+        }
+        String bind = commandLine.option("metrics-bind", InetAddress.getLoopbackAddress().getHostAddress());
+        PrometheusExporter exporter = new PrometheusExporter(InetAddress.getByName(bind),
+                commandLine.intOption("metrics-port", 9464));
+        System.out.println(String.format("Metrics on http://%s:%d/metrics", bind, exporter.getPort()));
+        return exporter;
+    }
+
+    // --jfr=file.jfr records the satiscript events plus the JDK profile settings (GC, safepoints, ...) into file
+    private static Closeable startRecording(CommandLine commandLine) throws IOException {
+        String file = commandLine.option("jfr", null);
+        if(file == null) {
+            return null;
+        }
+        Closeable recording = FlightEvents.startRecording(Paths.get(file));
+        System.out.println(String.format("Flight recording to %s", file));
+        return recording;
+    }
+
+    private static void runSingleRequest(String[] arguments) throws IOException {
+        CommandLine commandLine = new CommandLine(arguments, 0);
+        String[] args = commandLine.positionalArgs();
         String method = args[0];
         HttpMethod httpMethod = getHttpMethod(method);
         validateInputParamByHttpMethod(httpMethod, args);
+        ResultWriter results = ResultWriter.fromCommandLine(commandLine);
         ApiClient apiClient = null;
         try {
-            apiClient = new ApiClient(args[1], args[2], args[3]);
+            apiClient = new ApiClient(args[1], args[2], args[3], ClientConfig.from(commandLine).setResultSink(results));
         } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
             System.err.println("Exception on create ApiClient: " + e);
             System.exit(2);
         }
-        String payload = "";
-        if(args.length == 5) { payload = args[4]; }
+        Payload payload = Payload.of("");
+        if(args.length == 5) { payload = Payload.parse(args[4]); }
         switch(httpMethod) {
             case GET:
                 apiClient.getMethod(payload);
@@ -45,7 +152,11 @@ public class HttpSignature {
             default:
                 throw new IllegalArgumentException("This argument is not valid: " + httpMethod);
         }
-        System.out.println(String.format("\nEnd script in %s ms", System.currentTimeMillis() - t));
+        apiClient.close();
+        if(results != null) {
+            results.close();
+            results.printSummary(System.out);
+        }
     }
 
     private static void validateInputParamByHttpMethod(HttpMethod method, String[] args) {
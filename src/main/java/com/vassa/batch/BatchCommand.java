@@ -0,0 +1,79 @@
+package com.vassa.batch;
+
+import com.vassa.client.ApiClient;
+import com.vassa.client.ClientConfig;
+import com.vassa.client.ResponseSinks;
+import com.vassa.client.ResultWriter;
+import com.vassa.util.CommandLine;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+// batch <endpoint> <keyId> <keyPath> <requests.jsonl> [--parallelism=N] [--out=results.jsonl] [--adaptive]
+//       [--results=calls.jsonl] [--pipeline]
+// --pipeline signs on every core ahead of the --parallelism senders instead of signing in each sender
+public class BatchCommand {
+
+    public static void run(final String[] args, final PrintStream out) throws Exception {
+        CommandLine commandLine = new CommandLine(args, 1);
+        String endpoint = commandLine.positional(0);
+        String keyId = commandLine.positional(1);
+        String keyPath = commandLine.positional(2);
+        String file = commandLine.positional(3);
+        int parallelism = commandLine.intOption("parallelism", 8);
+        String resultsFile = commandLine.option("out", null);
+        boolean pipelined = commandLine.has("pipeline");
+        ResultWriter calls = ResultWriter.fromCommandLine(commandLine);
+
+        ClientConfig config = ClientConfig.from(commandLine)
+                .setMaxPerRoute(parallelism)
+                .setMaxTotal(parallelism)
+                .setWarmupConnections(parallelism)
+                .setResponseSink(ResponseSinks.discard())
+                .setResultSink(calls);
+        try (ApiClient apiClient = new ApiClient(endpoint, keyId, keyPath, config);
+             BufferedReader in = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8);
+             Writer results = resultsFile == null
+                     ? new BufferedWriter(new OutputStreamWriter(new NonClosingOutputStream(out),
+                             StandardCharsets.UTF_8))
+                     : Files.newBufferedWriter(Paths.get(resultsFile), StandardCharsets.UTF_8)) {
+            new BatchRunner(apiClient, parallelism, pipelined).run(in, results, out);
+            if(apiClient.getLimiter() != null) {
+                out.println(apiClient.getLimiter());
+            }
+        } finally {
+            if(calls != null) {
+                calls.close();
+                calls.printSummary(out);
+            }
+        }
+    }
+
+    // the results go to stdout without --out; closing their writer must not close it, the limiter, the call
+    // summary and the metrics are printed after
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+
+        private NonClosingOutputStream(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.vassa.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vassa.client.HttpMethod;
+import com.vassa.client.Payload;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// One JSONL line: {"method": "...", "endpoint": "...", "payload": ..., "headers": {...}}
+// "payload_file": "/path" sends the content of a file instead of an inline payload.
+public class BatchRecord {
+
+    private final HttpMethod method;
+    private final String endpoint;
+    private final Payload payload;
+    private final Map<String, String> headers;
+
+    public BatchRecord(final HttpMethod method, final String endpoint, final Payload payload,
+                       final Map<String, String> headers) {
+        this.method = method;
+        this.endpoint = endpoint;
+        this.payload = payload;
+        this.headers = headers;
+    }
+
+    public static BatchRecord parse(final ObjectMapper mapper, final String line) throws IOException {
+        return parse(mapper, mapper.readTree(line));
+    }
+
+    public static BatchRecord parse(final ObjectMapper mapper, final JsonNode node) throws IOException {
+        JsonNode method = node.get("method");
+        if(method == null || !method.isTextual()) {
+            throw new IllegalArgumentException("Missing method");
+        }
+        JsonNode endpoint = node.get("endpoint");
+        JsonNode payload = node.get("payload");
+        JsonNode payloadFile = node.get("payload_file");
+        Map<String, String> headers = new LinkedHashMap<>();
+        JsonNode headersNode = node.get("headers");
+        if(headersNode != null && headersNode.isObject()) {
+            Iterator<Map.Entry<String, JsonNode>> fields = headersNode.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                headers.put(field.getKey(), field.getValue().asText());
+            }
+        }
+        return new BatchRecord(HttpMethod.valueOf(method.asText().toUpperCase()),
+                endpoint == null ? null : endpoint.asText(),
+                payloadFile != null && payloadFile.isTextual()
+                        ? Payload.ofFile(Paths.get(payloadFile.asText()))
+                        : Payload.of(payloadText(mapper, payload)),
+                headers);
+    }
+
+    // a JSON payload can be given inline as an object or already serialized as a string
+    private static String payloadText(final ObjectMapper mapper, final JsonNode payload) throws IOException {
+        if(payload == null || payload.isNull()) {
+            return "";
+        }
+        return payload.isTextual() ? payload.asText() : mapper.writeValueAsString(payload);
+    }
+
+    public HttpMethod getMethod() {
+        return method;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public Payload getPayload() {
+        return payload;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+}
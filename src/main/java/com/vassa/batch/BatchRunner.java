@@ -0,0 +1,194 @@
+package com.vassa.batch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.vassa.client.ApiClient;
+import com.vassa.client.ApiResponse;
+import com.vassa.client.SigningPipeline;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Streams a JSONL file through one ApiClient: at most `parallelism` requests in flight,
+// at most `parallelism * WINDOW_FACTOR` lines held in memory, results written in input order.
+// Pipelined, requests are signed on all cores ahead of `parallelism` senders, see SigningPipeline.
+public class BatchRunner {
+
+    private static final int WINDOW_FACTOR = 4;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Future<String> END = CompletableFuture.completedFuture(null);
+
+    private final ApiClient apiClient;
+    private final int parallelism;
+    private final boolean pipelined;
+    private final Map<Integer, Long> statuses = new TreeMap<>();
+    private long errors;
+    private volatile Exception writeFailure;
+
+    public BatchRunner(final ApiClient apiClient, final int parallelism) {
+        this(apiClient, parallelism, false);
+    }
+
+    public BatchRunner(final ApiClient apiClient, final int parallelism, final boolean pipelined) {
+        if(parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism is not valid: " + parallelism);
+        }
+        this.apiClient = apiClient;
+        this.parallelism = parallelism;
+        this.pipelined = pipelined;
+    }
+
+    public void run(final BufferedReader in, final Writer out, final PrintStream summary)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        BlockingQueue<Future<String>> window = new ArrayBlockingQueue<>(parallelism * WINDOW_FACTOR);
+        ExecutorService executor = pipelined ? null
+                : Executors.newFixedThreadPool(parallelism, daemonThreads("batch-worker-"));
+        // one signed request ready for every sender
+        SigningPipeline pipeline = pipelined ? new SigningPipeline(apiClient, parallelism, parallelism) : null;
+        Thread writer = new Thread(() -> writeInOrder(window, out), "batch-writer");
+        writer.start();
+        long lines = 0;
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                lines++;
+                if(line.trim().isEmpty()) {
+                    continue;
+                }
+                final long number = lines;
+                final String text = line;
+                // put() blocks while the window is full, which keeps the reader at the pace of the slowest request
+                window.put(pipeline != null ? submit(pipeline, number, text)
+                        : executor.submit(() -> execute(number, text)));
+            }
+        } finally {
+            window.put(END);
+            writer.join();
+            if(pipeline != null) {
+                pipeline.close();
+            } else {
+                executor.shutdown();
+            }
+        }
+        if(writeFailure != null) {
+            throw new IOException("Cannot write batch results: " + writeFailure, writeFailure);
+        }
+        summary.println(String.format("Batch: %d lines in %.2f s", lines, (System.nanoTime() - start) / 1e9));
+        synchronized (statuses) {
+            statuses.forEach((status, count) -> summary.println(String.format("  status %d: %d", status, count)));
+        }
+        if(errors > 0) {
+            summary.println(String.format("  errors: %d", errors));
+        }
+    }
+
+    private String execute(final long number, final String line) {
+        long start = System.nanoTime();
+        BatchRecord record = null;
+        try {
+            record = BatchRecord.parse(MAPPER, line);
+            ApiResponse response = apiClient.execute(record.getMethod(), record.getEndpoint(),
+                    record.getPayload(), record.getHeaders());
+            return result(number, record, response, null, start);
+        } catch (IOException | RuntimeException e) {
+            return result(number, record, null, e, start);
+        }
+    }
+
+    // parsed on the reader thread, built, signed and sent by the pipeline
+    private Future<String> submit(final SigningPipeline pipeline, final long number, final String line)
+            throws InterruptedException {
+        final long start = System.nanoTime();
+        final BatchRecord record;
+        try {
+            record = BatchRecord.parse(MAPPER, line);
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.completedFuture(result(number, null, null, e, start));
+        }
+        return pipeline.submit(record.getMethod(), record.getEndpoint(), record.getPayload(), record.getHeaders())
+                .handle((response, failure) -> result(number, record, response, failure, start));
+    }
+
+    private String result(final long number, final BatchRecord record, final ApiResponse response,
+                          final Throwable failure, final long start) {
+        ObjectNode result = MAPPER.createObjectNode();
+        result.put("line", number);
+        if(record != null) {
+            result.put("method", record.getMethod().name());
+            result.put("endpoint", apiClient.resolve(record.getEndpoint()));
+        }
+        if(response != null) {
+            result.put("status", response.getStatus());
+            result.put("role_public", response.isRolePublic());
+            count(response.getStatus());
+        } else {
+            Throwable cause = failure.getCause() != null && failure instanceof CompletionException
+                    ? failure.getCause() : failure;
+            result.put("error", String.valueOf(cause.getMessage()));
+            count(-1);
+        }
+        result.put("latency_ms", (System.nanoTime() - start) / 1e6);
+        try {
+            return MAPPER.writeValueAsString(result);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot write batch result: " + e);
+        }
+    }
+
+    private void count(final int status) {
+        synchronized (statuses) {
+            if(status < 0) {
+                errors++;
+            } else {
+                statuses.merge(status, 1L, Long::sum);
+            }
+        }
+    }
+
+    private void writeInOrder(final BlockingQueue<Future<String>> window, final Writer out) {
+        try {
+            Future<String> next;
+            while ((next = window.take()) != END) {
+                // after a failure keep draining, so the reader never blocks on a full window
+                try {
+                    String result = next.get();
+                    if(writeFailure == null) {
+                        out.write(result);
+                        out.write('\n');
+                    }
+                } catch (IOException | ExecutionException e) {
+                    writeFailure = e;
+                }
+            }
+            out.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            writeFailure = e;
+        }
+    }
+
+    private static ThreadFactory daemonThreads(final String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
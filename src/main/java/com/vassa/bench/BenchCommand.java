@@ -0,0 +1,55 @@
+package com.vassa.bench;
+
+import com.vassa.client.ApiClient;
+import com.vassa.client.ClientConfig;
+import com.vassa.client.HttpMethod;
+import com.vassa.client.Payload;
+import com.vassa.client.ResponseSinks;
+import com.vassa.client.ResultWriter;
+import com.vassa.util.CommandLine;
+
+import java.io.PrintStream;
+
+// bench <method> <endpoint> <keyId> <keyPath> [payload] [--threads=N] [--duration=S] [--requests=N] [--warmup=S] [--rate=R]
+//       [--results=file]
+public class BenchCommand {
+
+    public static void run(final String[] args, final PrintStream out) throws Exception {
+        CommandLine commandLine = new CommandLine(args, 1);
+        HttpMethod method = HttpMethod.valueOf(commandLine.positional(0).toUpperCase());
+        String endpoint = commandLine.positional(1);
+        String keyId = commandLine.positional(2);
+        String keyPath = commandLine.positional(3);
+        Payload payload = Payload.parse(commandLine.positional(4, ""));
+        BenchOptions options = BenchOptions.from(commandLine);
+        ResultWriter results = ResultWriter.fromCommandLine(commandLine);
+
+        ClientConfig config = ClientConfig.from(commandLine)
+                .setMaxPerRoute(options.getThreads())
+                .setMaxTotal(options.getThreads())
+                .setWarmupConnections(options.getThreads())
+                .setResponseSink(ResponseSinks.discard())
+                .setResultSink(results);
+        try (ApiClient apiClient = new ApiClient(endpoint, keyId, keyPath, config)) {
+            out.println(String.format("Bench %s %s with %d threads, %s", method, endpoint, options.getThreads(),
+                    options.isOpenModel() ? String.format("open model at %.1f req/s", options.getRate()) : "closed loop"));
+            LoadGenerator generator = new LoadGenerator(options, () -> apiClient.execute(method, payload).getStatus());
+            BenchResult result = generator.run();
+            result.print(out, options.isOpenModel());
+            if(apiClient.getSignatureCache() != null) {
+                out.println(apiClient.getSignatureCache());
+            }
+            if(apiClient.getResponseCache() != null) {
+                out.println(apiClient.getResponseCache());
+            }
+            if(apiClient.getLimiter() != null) {
+                out.println(apiClient.getLimiter());
+            }
+        } finally {
+            if(results != null) {
+                results.close();
+                results.printSummary(out);
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.vassa.bench;
+
+import com.vassa.util.CommandLine;
+
+import java.util.concurrent.TimeUnit;
+
+public class BenchOptions {
+
+    private final int threads;
+    private final long durationNanos;
+    private final long requests;
+    private final long warmupNanos;
+    private final double rate;
+
+    public BenchOptions(final int threads, final long durationNanos, final long requests,
+                        final long warmupNanos, final double rate) {
+        if(threads < 1) {
+            throw new IllegalArgumentException("Threads is not valid: " + threads);
+        }
+        if(durationNanos <= 0 && requests <= 0) {
+            throw new IllegalArgumentException("Set a duration or a number of requests");
+        }
+        this.threads = threads;
+        this.durationNanos = durationNanos;
+        this.requests = requests;
+        this.warmupNanos = Math.max(0, warmupNanos);
+        this.rate = rate;
+    }
+
+    public static BenchOptions from(final CommandLine commandLine) {
+        long requests = commandLine.longOption("requests", 0);
+        long defaultDuration = requests > 0 ? 0 : 10;
+        return new BenchOptions(commandLine.intOption("threads", 4),
+                TimeUnit.SECONDS.toNanos(commandLine.longOption("duration", defaultDuration)),
+                requests,
+                TimeUnit.SECONDS.toNanos(commandLine.longOption("warmup", 0)),
+                commandLine.doubleOption("rate", 0));
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public long getWarmupNanos() {
+        return warmupNanos;
+    }
+
+    // requests per second for the open model, 0 for a closed loop
+    public double getRate() {
+        return rate;
+    }
+
+    public boolean isOpenModel() {
+        return rate > 0;
+    }
+}
@@ -0,0 +1,160 @@
+package com.vassa.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.vassa.metrics.LatencyHistogram;
+
+import java.io.PrintStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class BenchResult {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    // response time: for the open model measured from the intended start, so queueing
+    // behind a slow response is not hidden (coordinated omission correction)
+    private final LatencyHistogram responseTime = new LatencyHistogram();
+    // service time: measured from the actual send
+    private final LatencyHistogram serviceTime = new LatencyHistogram();
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    private final LongAdder errors = new LongAdder();
+    private volatile long elapsedNanos;
+
+    public void record(final int status, final long responseNanos, final long serviceNanos) {
+        responseTime.recordNanos(responseNanos);
+        serviceTime.recordNanos(serviceNanos);
+        statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+    }
+
+    public void recordError(final long responseNanos, final long serviceNanos) {
+        responseTime.recordNanos(responseNanos);
+        serviceTime.recordNanos(serviceNanos);
+        errors.increment();
+    }
+
+    public void merge(final BenchResult other) {
+        responseTime.add(other.responseTime);
+        serviceTime.add(other.serviceTime);
+        other.statuses.forEach((status, count) ->
+                statuses.computeIfAbsent(status, s -> new LongAdder()).add(count.sum()));
+        errors.add(other.errors.sum());
+        elapsedNanos = Math.max(elapsedNanos, other.elapsedNanos);
+    }
+
+    // everything needed to merge this result in another process; histograms are sparse [index, count] pairs
+    public ObjectNode toJson(final ObjectMapper mapper) {
+        final ObjectNode node = mapper.createObjectNode();
+        node.put("elapsed_ns", elapsedNanos);
+        node.put("errors", getErrors());
+        final ObjectNode statusNode = node.putObject("statuses");
+        getStatuses().forEach((status, count) -> statusNode.put(String.valueOf(status), count));
+        node.set("response_time", histogramJson(mapper, responseTime));
+        node.set("service_time", histogramJson(mapper, serviceTime));
+        return node;
+    }
+
+    public static BenchResult fromJson(final JsonNode node) {
+        final BenchResult result = new BenchResult();
+        result.elapsedNanos = node.path("elapsed_ns").asLong();
+        result.errors.add(node.path("errors").asLong());
+        final Iterator<Map.Entry<String, JsonNode>> statusNodes = node.path("statuses").fields();
+        while (statusNodes.hasNext()) {
+            final Map.Entry<String, JsonNode> status = statusNodes.next();
+            result.statuses.computeIfAbsent(Integer.parseInt(status.getKey()), s -> new LongAdder())
+                    .add(status.getValue().asLong());
+        }
+        addHistogram(node.path("response_time"), result.responseTime);
+        addHistogram(node.path("service_time"), result.serviceTime);
+        return result;
+    }
+
+    private static ObjectNode histogramJson(final ObjectMapper mapper, final LatencyHistogram histogram) {
+        final ObjectNode node = mapper.createObjectNode();
+        node.put("max_us", histogram.getMaxMicros());
+        final ArrayNode buckets = node.putArray("buckets");
+        final long[] counts = histogram.counts();
+        for (int i = 0; i < counts.length; i++) {
+            if(counts[i] != 0) {
+                buckets.addArray().add(i).add(counts[i]);
+            }
+        }
+        return node;
+    }
+
+    private static void addHistogram(final JsonNode node, final LatencyHistogram histogram) {
+        final long[] counts = new long[LatencyHistogram.BUCKETS];
+        for (JsonNode bucket : node.path("buckets")) {
+            final int index = bucket.path(0).asInt(-1);
+            if(index < 0 || index >= counts.length) {
+                throw new IllegalArgumentException("Histogram bucket is not valid: " + bucket);
+            }
+            counts[index] += bucket.path(1).asLong();
+        }
+        histogram.add(counts, node.path("max_us").asLong());
+    }
+
+    void setElapsedNanos(final long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public LatencyHistogram getResponseTime() {
+        return responseTime;
+    }
+
+    public LatencyHistogram getServiceTime() {
+        return serviceTime;
+    }
+
+    public Map<Integer, Long> getStatuses() {
+        final Map<Integer, Long> counts = new TreeMap<>();
+        statuses.forEach((status, count) -> counts.put(status, count.sum()));
+        return counts;
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long getCount() {
+        return responseTime.getTotalCount();
+    }
+
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : getCount() * 1e9 / elapsedNanos;
+    }
+
+    public void print(final PrintStream out, final boolean openModel) {
+        out.println(String.format("Requests: %d in %.2f s (%.1f req/s)", getCount(), elapsedNanos / 1e9, getThroughput()));
+        getStatuses().forEach((status, count) -> out.println(String.format("  status %d: %d", status, count)));
+        if(getErrors() > 0) {
+            out.println(String.format("  errors: %d", getErrors()));
+        }
+        print(out, openModel ? "Response time (corrected)" : "Latency", responseTime);
+        if(openModel) {
+            print(out, "Service time", serviceTime);
+        }
+    }
+
+    private static void print(final PrintStream out, final String title, final LatencyHistogram histogram) {
+        final StringBuilder sb = new StringBuilder(title).append(" ms:");
+        for (double percentile : PERCENTILES) {
+            sb.append(String.format(" p%s=%.3f", format(percentile), histogram.percentileMicros(percentile) / 1000.0));
+        }
+        sb.append(String.format(" max=%.3f mean=%.3f", histogram.getMaxMicros() / 1000.0, histogram.getMeanMicros() / 1000.0));
+        out.println(sb);
+    }
+
+    private static String format(final double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+}
@@ -0,0 +1,146 @@
+package com.vassa.bench;
+
+import com.vassa.util.CommandLine;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.URIScheme;
+import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncServer;
+import org.apache.hc.core5.http.nio.AsyncRequestConsumer;
+import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
+import org.apache.hc.core5.http.nio.entity.AsyncEntityProducers;
+import org.apache.hc.core5.http.nio.entity.DiscardingEntityConsumer;
+import org.apache.hc.core5.http.nio.support.AsyncResponseBuilder;
+import org.apache.hc.core5.http.nio.support.BasicRequestConsumer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.impl.nio.bootstrap.H2ServerBootstrap;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.reactor.IOSession;
+import org.apache.hc.core5.reactor.IOSessionListener;
+import org.apache.hc.core5.reactor.ListenerEndpoint;
+import org.apache.hc.core5.util.TimeValue;
+
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// h2c-server [--port=8099] [--delay-ms=N]
+// Cleartext HTTP/2 (prior knowledge) on loopback for measuring --http2 with bench: answers every request with
+// a JSON body after delay-ms and logs each new connection, so the connection count can be compared with an
+// HTTP/1.1 run against a real endpoint. Signatures are not checked.
+public class H2cTestServer {
+
+    public static final int DEFAULT_PORT = 8099;
+
+    private static final String BODY = "{\"authentication_key\":{\"role\":\"USER\"}}";
+
+    public static void run(final String[] args, final PrintStream out) throws Exception {
+        CommandLine commandLine = new CommandLine(args, 1);
+        int port = commandLine.intOption("port", DEFAULT_PORT);
+        long delayMs = commandLine.longOption("delay-ms", 0);
+
+        AtomicInteger open = new AtomicInteger();
+        AtomicInteger connections = new AtomicInteger();
+        AtomicLong requests = new AtomicLong();
+        ScheduledExecutorService delays = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "h2c-delay");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        HttpAsyncServer server = H2ServerBootstrap.bootstrap()
+                .setVersionPolicy(HttpVersionPolicy.FORCE_HTTP_2)
+                .setIOReactorConfig(IOReactorConfig.custom().setSoReuseAddress(true).setTcpNoDelay(true).build())
+                .setIOSessionListener(new ConnectionLog(open, connections, out))
+                .register("*", new AsyncServerRequestHandler<Message<HttpRequest, Void>>() {
+                    @Override
+                    public AsyncRequestConsumer<Message<HttpRequest, Void>> prepare(final HttpRequest request,
+                            final EntityDetails entityDetails, final HttpContext context) {
+                        return new BasicRequestConsumer<>(entityDetails != null ? new DiscardingEntityConsumer<>() : null);
+                    }
+
+                    @Override
+                    public void handle(final Message<HttpRequest, Void> message, final ResponseTrigger trigger,
+                                       final HttpContext context) {
+                        requests.incrementAndGet();
+                        Runnable respond = () -> {
+                            try {
+                                trigger.submitResponse(AsyncResponseBuilder.create(HttpStatus.SC_OK)
+                                        .setEntity(AsyncEntityProducers.create(BODY, ContentType.APPLICATION_JSON))
+                                        .build(), context);
+                            } catch (Exception e) {
+                                out.println("Cannot respond: " + e);
+                            }
+                        };
+                        if(delayMs > 0) {
+                            delays.schedule(respond, delayMs, TimeUnit.MILLISECONDS);
+                        } else {
+                            respond.run();
+                        }
+                    }
+                })
+                .create();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            out.println(String.format("Served %d requests over %d connections", requests.get(), connections.get()));
+            server.close(CloseMode.GRACEFUL);
+        }));
+        server.start();
+        ListenerEndpoint endpoint = server.listen(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                URIScheme.HTTP).get();
+        out.println(String.format("h2c server listening on %s, response delay %d ms", endpoint.getAddress(), delayMs));
+        server.awaitShutdown(TimeValue.MAX_VALUE);
+    }
+
+    private static final class ConnectionLog implements IOSessionListener {
+        private final AtomicInteger open;
+        private final AtomicInteger connections;
+        private final PrintStream out;
+
+        private ConnectionLog(final AtomicInteger open, final AtomicInteger connections, final PrintStream out) {
+            this.open = open;
+            this.connections = connections;
+            this.out = out;
+        }
+
+        @Override
+        public void connected(final IOSession session) {
+            out.println(String.format("Connection #%d from %s, %d open", connections.incrementAndGet(),
+                    session.getRemoteAddress(), open.incrementAndGet()));
+        }
+
+        @Override
+        public void disconnected(final IOSession session) {
+            open.decrementAndGet();
+        }
+
+        @Override
+        public void startTls(final IOSession session) {
+        }
+
+        @Override
+        public void inputReady(final IOSession session) {
+        }
+
+        @Override
+        public void outputReady(final IOSession session) {
+        }
+
+        @Override
+        public void timeout(final IOSession session) {
+        }
+
+        @Override
+        public void exception(final IOSession session, final Exception ex) {
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.vassa.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public class LoadGenerator {
+
+    private final BenchOptions options;
+    private final RequestExecutor executor;
+
+    public LoadGenerator(final BenchOptions options, final RequestExecutor executor) {
+        this.options = options;
+        this.executor = executor;
+    }
+
+    public BenchResult run() throws InterruptedException {
+        return run(new BenchResult());
+    }
+
+    // records the measured phase into result, which can be read while the run is going
+    public BenchResult run(final BenchResult result) throws InterruptedException {
+        if(options.getWarmupNanos() > 0) {
+            runPhase(options.getWarmupNanos(), 0, new BenchResult());
+        }
+        final long elapsed = runPhase(options.getDurationNanos(), options.getRequests(), result);
+        result.setElapsedNanos(elapsed);
+        return result;
+    }
+
+    private long runPhase(final long durationNanos, final long requests, final BenchResult result)
+            throws InterruptedException {
+        final long start = System.nanoTime();
+        final long end = durationNanos > 0 ? start + durationNanos : Long.MAX_VALUE;
+        final long limit = requests > 0 ? requests : Long.MAX_VALUE;
+        final AtomicLong sequence = new AtomicLong();
+        final List<Thread> workers = new ArrayList<>(options.getThreads());
+        for (int i = 0; i < options.getThreads(); i++) {
+            Runnable loop = options.isOpenModel()
+                    ? () -> openLoop(start, end, limit, sequence, result)
+                    : () -> closedLoop(end, limit, sequence, result);
+            Thread worker = new Thread(loop, "bench-worker-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private void closedLoop(final long end, final long limit, final AtomicLong sequence, final BenchResult result) {
+        while (System.nanoTime() < end && sequence.getAndIncrement() < limit) {
+            final long sent = System.nanoTime();
+            send(sent, sent, result);
+        }
+    }
+
+    // Constant arrival rate: request i is due at start + i / rate whether or not earlier ones
+    // have completed. Latency is taken from that due time, which corrects coordinated omission.
+    private void openLoop(final long start, final long end, final long limit, final AtomicLong sequence,
+                          final BenchResult result) {
+        final double intervalNanos = 1e9 / options.getRate();
+        while (true) {
+            final long i = sequence.getAndIncrement();
+            final long intended = start + (long) (i * intervalNanos);
+            if(i >= limit || intended >= end) {
+                return;
+            }
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            send(intended, System.nanoTime(), result);
+        }
+    }
+
+    private void send(final long intended, final long sent, final BenchResult result) {
+        try {
+            final int status = executor.execute();
+            final long done = System.nanoTime();
+            result.record(status, done - intended, done - sent);
+        } catch (Exception e) {
+            final long done = System.nanoTime();
+            result.recordError(done - intended, done - sent);
+        }
+    }
+
+    public interface RequestExecutor {
+        // returns the HTTP status code
+        int execute() throws Exception;
+    }
+}
@@ -0,0 +1,145 @@
+package com.vassa.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// AIMD limit on the calls an ApiClient has in flight. Every response that comes back without congestion adds
+// 1/limit (about +1 per round trip while the limit is in use); a 429, a 503, a failed call, or recent latency
+// above TOLERANCE times the long term latency multiplies it by BACKOFF, at most once per round trip. Callers
+// over the limit block in acquire(), so the bounded queues in front of the client (batch window, bench workers)
+// fill up and the request source slows down instead of the server tipping over.
+public class AdaptiveLimiter {
+
+    private static final double BACKOFF = 0.75;
+    private static final double TOLERANCE = 2.0;
+    // moving averages over about this many responses: recent latency, and the baseline it is compared with
+    private static final int SHORT_WINDOW = 10;
+    private static final int LONG_WINDOW = 500;
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int SERVICE_UNAVAILABLE = 503;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private int waiting;
+    private double shortNanos;
+    private double longNanos;
+    private long lastDecrease;
+    private long throttled;
+    private long congested;
+
+    public AdaptiveLimiter(final int initialLimit, final int minLimit, final int maxLimit) {
+        if(minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Concurrency limits are not valid: min " + minLimit + ", max " + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.lastDecrease = System.nanoTime();
+    }
+
+    public void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            waiting++;
+            try {
+                while (inFlight >= (int) limit) {
+                    available.await();
+                }
+            } finally {
+                waiting--;
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // status 0 when the call failed without a response
+    public void release(final long latencyNanos, final int status) {
+        lock.lock();
+        try {
+            final boolean saturated = inFlight >= (int) limit;
+            inFlight--;
+            final boolean throttledResponse = status == 0 || status == TOO_MANY_REQUESTS || status == SERVICE_UNAVAILABLE;
+            if(!throttledResponse) {
+                updateLatency(latencyNanos);
+            }
+            final boolean slow = !throttledResponse && shortNanos > TOLERANCE * longNanos;
+            if(throttledResponse || slow) {
+                final long now = System.nanoTime();
+                // the calls still in flight saw the same congestion, one decrease per round trip is enough
+                if(now - lastDecrease >= latencyNanos) {
+                    lastDecrease = now;
+                    limit = Math.max(minLimit, limit * BACKOFF);
+                    if(throttledResponse) {
+                        throttled++;
+                    } else {
+                        congested++;
+                    }
+                }
+            } else if(saturated) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void updateLatency(final long latencyNanos) {
+        if(longNanos == 0) {
+            shortNanos = latencyNanos;
+            longNanos = latencyNanos;
+            return;
+        }
+        shortNanos += (latencyNanos - shortNanos) / SHORT_WINDOW;
+        longNanos += (latencyNanos - longNanos) / LONG_WINDOW;
+        // once the congestion is gone, don't keep comparing with the latency it caused
+        if(longNanos > TOLERANCE * shortNanos) {
+            longNanos *= 0.95;
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return String.format("Concurrency limit: %d (min %d, max %d), backed off %d times on 429/503/errors and %d on latency, baseline %.3f ms",
+                    (int) limit, minLimit, maxLimit, throttled, congested, longNanos / TimeUnit.MILLISECONDS.toNanos(1));
+        } finally {
+            lock.unlock();
+        }
+    }
+}
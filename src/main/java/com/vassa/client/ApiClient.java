@@ -1,157 +1,473 @@
 package com.vassa.client;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.hash.Hashing;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.vassa.metrics.FlightEvents;
+import com.vassa.metrics.Metrics;
+import com.vassa.security.Keyring;
 import com.vassa.security.RequestSigner;
-import com.vassa.util.PrivateKeyUtil;
-import org.apache.http.HttpResponse;
+import com.vassa.security.SignatureCache;
+import org.apache.http.Header;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.*;
-import org.apache.http.entity.StringEntity;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.DefaultSchemePortResolver;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
-import org.json.JSONObject;
 
-import java.io.File;
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
+import java.io.StringWriter;
+import java.net.URI;
 import java.security.NoSuchAlgorithmException;
-import java.security.PrivateKey;
 import java.security.spec.InvalidKeySpecException;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
-public class ApiClient {
+public class ApiClient implements Closeable {
 
     public static final String AUTHENTICATION_KEY_ROLE_PUBLIC = "PUBLIC";
     public static final String FORBIDDEN_ERR_MESSAGE = "The signature string is malformed or the key-id is wrong";
+    public static final String THROTTLED_ERR_MESSAGE = "The server is throttling requests, retry after %s";
+    public static final String UNAVAILABLE_ERR_MESSAGE = "The service is unavailable, retry after %s";
     public static final String PUBLIC_ROLE_ERR_MESSAGE = "the key-id was recognized but the signature is wrong.";
     public static final String DIGEST = "digest";
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    private static final int INITIAL_CONCURRENCY = 4;
+    private static final String RETRY_AFTER = "Retry-After";
     private final String endpoint;
+    private final Keyring keyring;
     private final RequestSigner signer;
+    private final PayloadDigest payloadDigest;
+    private final ContentEncoding requestEncoding;
+    private final ResponseSink.Factory responseSink;
+    private final ResultSink resultSink;
+    private final ResponseCache responseCache;
+    private final String cacheScope;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final Http2Transport http2;
+    private final AdaptiveLimiter limiter;
+    private final LongSupplier poolLeased;
+    private final LongSupplier poolAvailable;
+    private final LongSupplier poolPending;
+    private final LongSupplier concurrencyLimit;
+    private final LongSupplier limiterWaiting;
 
     public ApiClient(final String endpoint, final String keyId, final String pathFile)
             throws IOException, NoSuchAlgorithmException, InvalidKeySpecException {
-        checkEndpoint(endpoint);
-        checkKeyId(keyId);
-        checkFileExists(pathFile);
+        this(endpoint, keyId, pathFile, ClientConfig.defaults());
+    }
+
+    public ApiClient(final String endpoint, final String keyId, final String pathFile, final ClientConfig config)
+            throws IOException, NoSuchAlgorithmException, InvalidKeySpecException {
+        SignedRequests.checkKeyId(keyId);
+        SignedRequests.checkFileExists(pathFile);
         this.endpoint = endpoint;
-        PrivateKey privateKey = PrivateKeyUtil.loadPrivateKey(pathFile);
-        this.signer = new RequestSigner(keyId, privateKey);
+        this.payloadDigest = config.getPayloadDigest();
+        this.requestEncoding = config.getRequestEncoding();
+        this.responseSink = config.getResponseSink();
+        this.resultSink = config.getResultSink();
+        // the role in a response depends on the key that signed the request, and an entry is only as
+        // complete as the sink that read it
+        this.cacheScope = ResponseSinks.cacheScope(responseSink);
+        this.responseCache = config.getResponseCacheBytes() > 0 && cacheScope != null
+                ? new ResponseCache(config.getResponseCacheBytes(), config.getResponseCacheDirectory()) : null;
+        // keys before the transport, so a bad key does not leave a pool and its eviction thread behind
+        this.keyring = SignedRequests.openKeyring(pathFile);
+        try {
+            this.signer = SignedRequests.newSigner(keyId, pathFile, keyring, config);
+        } catch (IOException | NoSuchAlgorithmException | InvalidKeySpecException | RuntimeException e) {
+            closeKeyring();
+            throw e;
+        }
+        if(config.isHttp2()) {
+            // no HTTP/1.1 pool: the h2 connection is opened by the endpoint check and shared by all calls
+            this.connectionManager = null;
+            this.httpClient = null;
+            this.http2 = new Http2Transport(config, CONNECT_TIMEOUT_MS);
+        } else {
+            this.connectionManager = buildConnectionManager(config);
+            this.httpClient = HttpClients.custom()
+                    .setConnectionManager(connectionManager)
+                    .setRequestExecutor(new TimedRequestExecutor())
+                    .evictExpiredConnections()
+                    .evictIdleConnections(config.getIdleEvictionMs(), TimeUnit.MILLISECONDS)
+                    .build();
+            this.http2 = null;
+        }
+        this.poolLeased = () -> connectionManager.getTotalStats().getLeased();
+        this.poolAvailable = () -> connectionManager.getTotalStats().getAvailable();
+        this.poolPending = () -> connectionManager.getTotalStats().getPending();
+        this.limiter = config.isAdaptiveConcurrency()
+                ? new AdaptiveLimiter(INITIAL_CONCURRENCY, 1, config.getMaxPerRoute()) : null;
+        this.concurrencyLimit = () -> limiter.getLimit();
+        this.limiterWaiting = () -> limiter.getWaiting();
+        try {
+            if(http2 != null) {
+                http2.checkEndpoint(endpoint);
+            } else {
+                warmUp(config.getWarmupConnections());
+                checkEndpoint(endpoint);
+            }
+        } catch (IOException | RuntimeException e) {
+            closeTransport();
+            closeKeyring();
+            throw e;
+        }
+        if(connectionManager != null) {
+            Metrics.POOL_LEASED.register(poolLeased);
+            Metrics.POOL_AVAILABLE.register(poolAvailable);
+            Metrics.POOL_PENDING.register(poolPending);
+        }
+        if(limiter != null) {
+            Metrics.CONCURRENCY_LIMIT.register(concurrencyLimit);
+            Metrics.LIMITER_WAITING.register(limiterWaiting);
+        }
     }
 
-    private void checkKeyId(String keyId) {
-        if(keyId == null || keyId.trim().equals("")) {
-            throw new IllegalArgumentException("Key ID is not valid: [" + keyId + "]");
+    private static PoolingHttpClientConnectionManager buildConnectionManager(final ClientConfig config) {
+        PoolingHttpClientConnectionManager manager = new TimedConnectionManager();
+        manager.setMaxTotal(config.getMaxTotal());
+        manager.setDefaultMaxPerRoute(config.getMaxPerRoute());
+        manager.setValidateAfterInactivity(config.getValidateAfterInactivityMs());
+        return manager;
+    }
+
+    private void checkEndpoint(final String endpoint) throws IOException {
+        try (CloseableHttpResponse response = httpClient.execute(new HttpGet(endpoint))) {
+            // consume the body so the connection goes back to the pool instead of being dropped
+            EntityUtils.consume(response.getEntity());
+            int status = response.getStatusLine().getStatusCode();
+            if(status >= HttpStatus.SC_BAD_REQUEST) {
+                throw new IOException("Server returned HTTP response code: " + status + " for URL: " + endpoint);
+            }
         }
     }
 
-    private void checkFileExists(String pathFile) {
-        File f = new File(pathFile);
-        if(!f.exists()) {
-            throw new IllegalArgumentException("Not found file in path: " + pathFile);
+    private void warmUp(final int connections) throws IOException {
+        if(connections <= 0) {
+            return;
+        }
+        HttpRoute route = routeOf(endpoint);
+        List<HttpClientConnection> opened = new ArrayList<>(connections);
+        try {
+            for (int i = 0; i < Math.min(connections, connectionManager.getDefaultMaxPerRoute()); i++) {
+                ConnectionRequest connectionRequest = connectionManager.requestConnection(route, null);
+                HttpClientConnection connection = connectionRequest.get(CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                opened.add(connection);
+                if(!connection.isOpen()) {
+                    HttpClientContext context = HttpClientContext.create();
+                    connectionManager.connect(connection, route, CONNECT_TIMEOUT_MS, context);
+                    connectionManager.routeComplete(connection, route, context);
+                    // httpcore binds the socket streams on the first request; the stale check of an idle
+                    // connection that never sent one fails with "Input stream is null", flush() binds them now
+                    connection.flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while warming up the connection pool", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Cannot warm up the connection pool: " + e.getCause(), e);
+        } finally {
+            for (HttpClientConnection connection : opened) {
+                connectionManager.releaseConnection(connection, null, 0, TimeUnit.MILLISECONDS);
+            }
         }
     }
 
-    private void checkEndpoint(final String endpoint) throws IOException {
-        new URL(endpoint).openStream().close();
+    private static HttpRoute routeOf(final String endpoint) {
+        HttpHost host = URIUtils.extractHost(URI.create(endpoint));
+        if(host == null) {
+            throw new IllegalArgumentException("Endpoint is not valid: [" + endpoint + "]");
+        }
+        try {
+            int port = DefaultSchemePortResolver.INSTANCE.resolve(host);
+            HttpHost target = new HttpHost(host.getHostName(), port, host.getSchemeName());
+            return new HttpRoute(target, null, "https".equalsIgnoreCase(target.getSchemeName()));
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Endpoint is not valid: [" + endpoint + "]", e);
+        }
     }
 
     public void getMethod(String payload) {
-        HttpRequestBase request = new HttpGet(endpoint);
-        request.setHeader(DIGEST, generateDigest(payload));
-        signer.signRequest(request);
-        call(request);
+        getMethod(Payload.of(payload));
     }
 
     public void postMethod(String payload) {
-        HttpRequestBase request = new HttpPost(endpoint);
-        request.setHeader(DIGEST, generateDigest(payload));
-        request.setHeader("Content-Type", "application/json");
-        ((HttpPost) request).setEntity(convert(payload));
-        call(request);
+        postMethod(Payload.of(payload));
     }
 
     public void putMethod(String payload) {
-        HttpRequestBase request = new HttpPut(endpoint);
-        request.setHeader(DIGEST, generateDigest(payload));
-        request.setHeader("Content-Type", "application/json");
-        ((HttpPut) request).setEntity(convert(payload));
-        call(request);
+        putMethod(Payload.of(payload));
     }
 
     public void deleteMethod(String payload) {
-        HttpRequestBase request = new HttpDelete(endpoint);
-        request.setHeader(DIGEST, generateDigest(payload));
-        call(request);
+        deleteMethod(Payload.of(payload));
     }
 
-    private void call(final HttpRequestBase request) {
+    public void getMethod(Payload payload) {
+        call(buildRequest(HttpMethod.GET, payload));
+    }
+
+    public void postMethod(Payload payload) {
+        call(buildRequest(HttpMethod.POST, payload));
+    }
+
+    public void putMethod(Payload payload) {
+        call(buildRequest(HttpMethod.PUT, payload));
+    }
+
+    public void deleteMethod(Payload payload) {
+        call(buildRequest(HttpMethod.DELETE, payload));
+    }
+
+    public ApiResponse execute(final HttpMethod method, final String payload) {
+        return execute(buildRequest(method, Payload.of(payload)));
+    }
+
+    public ApiResponse execute(final HttpMethod method, final Payload payload) {
+        return execute(buildRequest(method, payload));
+    }
+
+    // target is either an absolute URL or a path resolved against the client endpoint
+    public ApiResponse execute(final HttpMethod method, final String target, final String payload,
+                               final Map<String, String> headers) {
+        return execute(method, target, Payload.of(payload), headers);
+    }
+
+    public ApiResponse execute(final HttpMethod method, final String target, final Payload payload,
+                               final Map<String, String> headers) {
+        return execute(SignedRequests.build(method, resolve(target), payload, payloadDigest, requestEncoding, headers,
+                false));
+    }
+
+    // built and signed now, for SigningPipeline; the Date is the one of this moment
+    Signed sign(final HttpMethod method, final String target, final Payload payload,
+                final Map<String, String> headers) {
+        final HttpRequestBase request = SignedRequests.build(method, resolve(target), payload, payloadDigest,
+                requestEncoding, headers, false);
+        final boolean ownDate = !request.containsHeader("Date");
         signer.signRequest(request);
-        try (CloseableHttpClient httpClient = HttpClientBuilder.create().build()) {
-            HttpResponse response = httpClient.execute(request);
-            if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
-                String resp = parseHttpResponse(response);
-                boolean isRolePublic = isAuthenticationRolePublic(resp);
-                if(isRolePublic) {
-                    System.out.println(String.format("%s - %s", HttpStatus.SC_OK, PUBLIC_ROLE_ERR_MESSAGE));
-                } else {
-                    ObjectMapper objMapper = new ObjectMapper();
-                    String jsonResponse = objMapper.writerWithDefaultPrettyPrinter().writeValueAsString(resp);
+        return new Signed(request, ownDate);
+    }
+
+    ApiResponse executeSigned(final Signed signed) {
+        return execute(signed.request, signed);
+    }
+
+    public String resolve(final String target) {
+        return SignedRequests.resolve(endpoint, target);
+    }
+
+    private HttpRequestBase buildRequest(final HttpMethod method, final Payload payload) {
+        return SignedRequests.build(method, endpoint, payload, payloadDigest, requestEncoding, null, false);
+    }
+
+    private void call(final HttpRequestBase request) {
+        ApiResponse response = execute(request);
+        if(resultSink != null) {
+            // already recorded by execute, nothing goes to the console
+            return;
+        }
+        if (response.getStatus() == HttpStatus.SC_OK) {
+            if(response.isRolePublic()) {
+                System.out.println(String.format("%s - %s", HttpStatus.SC_OK, PUBLIC_ROLE_ERR_MESSAGE));
+            } else if(response.getBody() == null) {
+                System.out.println(String.format("Response : %d bytes", response.getBodyBytes()));
+            } else {
+                try {
+                    StringWriter jsonResponse = new StringWriter();
+                    try (JsonGenerator generator = ResponseReader.JSON.createGenerator(jsonResponse)) {
+                        generator.writeString(response.getBody());
+                    }
                     System.out.println("Response : " + jsonResponse);
+                } catch (IOException e) {
+                    throw new RuntimeException("Exception during call api: " + e);
                 }
-            } else if(response.getStatusLine().getStatusCode() == HttpStatus.SC_FORBIDDEN) {
-                System.out.println(String.format("%s - %s", HttpStatus.SC_FORBIDDEN, FORBIDDEN_ERR_MESSAGE));
-            } else {
-                System.out.println(String.format("Error response: %s", response.getStatusLine()));
             }
+        } else if(response.getStatus() == HttpStatus.SC_FORBIDDEN) {
+            System.out.println(String.format("%s - %s", HttpStatus.SC_FORBIDDEN, FORBIDDEN_ERR_MESSAGE));
+        } else if(response.getStatus() == 429) {
+            System.out.println(String.format("%s - " + THROTTLED_ERR_MESSAGE, 429, retryAfter(response)));
+        } else if(response.getStatus() == HttpStatus.SC_SERVICE_UNAVAILABLE) {
+            System.out.println(String.format("%s - " + UNAVAILABLE_ERR_MESSAGE, HttpStatus.SC_SERVICE_UNAVAILABLE,
+                    retryAfter(response)));
+        } else {
+            System.out.println(String.format("Error response: %s", response.getStatusLine()));
+        }
+    }
+
+    private static String retryAfter(final ApiResponse response) {
+        for (Header header : response.getHeaders()) {
+            if(RETRY_AFTER.equalsIgnoreCase(header.getName())) {
+                return header.getValue();
+            }
+        }
+        return "an unspecified delay";
+    }
+
+    private ApiResponse execute(final HttpRequestBase request) {
+        return execute(request, null);
+    }
+
+    // signed null signs the request here, otherwise it was signed ahead by SigningPipeline
+    private ApiResponse execute(final HttpRequestBase request, final Signed signed) {
+        final long start = Metrics.start();
+        final Object event = FlightEvents.beginApiCall();
+        acquire();
+        final long sent = limiter != null ? System.nanoTime() : 0;
+        final long begin = resultSink != null ? System.nanoTime() : 0;
+        final CallTimings timings = event != null ? CallTimings.begin() : null;
+        int status = 0;
+        ApiResponse response = null;
+        // a signed request cannot take validators any more
+        final boolean cacheable = responseCache != null && signed == null && request instanceof HttpGet;
+        // picked before the lookup, so with a keyring each key has its own entries
+        final String keyId = signed == null ? signer.nextKeyId() : null;
+        final String cacheKey = cacheable ? keyId + " " + cacheScope + " " + request.getURI() : null;
+        try {
+            // validators before signing, they are part of the signature
+            final ResponseCache.Entry cached = cacheable ? responseCache.prepare(cacheKey, request) : null;
+            // signed after the limiter wait, so the Date header is fresh
+            if(signed == null) {
+                signer.signRequest(request, keyId);
+            } else if(signed.isStale()) {
+                // signed ahead, then held up by the hand-off queue or the limiter
+                request.removeHeaders("Date");
+                signer.signRequest(request);
+            }
+            response = http2 != null ? http2.execute(request, responseSink.create()) : send(request);
+            status = response.getStatus();
+            Metrics.response(status);
+            if(cacheable) {
+                response = responseCache.update(cacheKey, cached, response);
+            }
+            return response;
         } catch (IOException e) {
+            Metrics.error();
             throw new RuntimeException("Exception during call api: " + e);
+        } finally {
+            if(limiter != null) {
+                limiter.release(System.nanoTime() - sent, status);
+            }
+            if(resultSink != null) {
+                resultSink.record(request.getMethod(), status, System.nanoTime() - begin,
+                        response == null ? 0 : response.getBodyBytes(), response != null && response.isRolePublic());
+            }
+            if(timings != null) {
+                CallTimings.end();
+                FlightEvents.commitApiCall(event, request.getMethod(), request.getURI().toString(), status,
+                        timings.poolWaitNanos, timings.timeToFirstByteNanos);
+            }
+            Metrics.API_CALL.stop(start);
         }
     }
 
-    private StringEntity convert(String payload) {
+    private void acquire() {
+        if(limiter == null) {
+            return;
+        }
         try {
-            return new StringEntity(payload);
-        } catch (UnsupportedEncodingException e) {
-            throw new RuntimeException("Not supported payload: " + payload + "\n Error: " + e);
+            limiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the concurrency limit");
         }
     }
 
-    private String generateDigest(final String msg) {
-        return Hashing.sha256().hashString(msg, StandardCharsets.UTF_8).toString();
+    private ApiResponse send(final HttpRequestBase request) throws IOException {
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            int status = response.getStatusLine().getStatusCode();
+            if (status == HttpStatus.SC_OK) {
+                // HttpClient decodes gzip and deflate itself and drops the header, anything left is still encoded
+                Header encoding = response.getFirstHeader(ContentEncoding.HEADER);
+                ResponseReader.Result result = ResponseReader.read(response.getEntity(),
+                        encoding == null ? null : encoding.getValue(), responseSink.create());
+                return new ApiResponse(status, response.getStatusLine().toString(), response.getAllHeaders(),
+                        result.rolePublic, result.body, result.bytes);
+            }
+            EntityUtils.consume(response.getEntity());
+            return new ApiResponse(status, response.getStatusLine().toString(), response.getAllHeaders(),
+                    false, null, 0);
+        }
     }
 
+    // null unless ClientConfig.setSignatureCacheSize was set
+    public SignatureCache getSignatureCache() {
+        return signer.getSignatureCache();
+    }
 
-    private boolean isAuthenticationRolePublic(final String resp) {
-        List<String> attributeJson = Arrays.asList("authentication_key", "role");
-        Object obj = new JSONObject(resp);
-        for (String attribute: attributeJson) {
-            if(obj instanceof JSONObject) {
-                JSONObject jsonObj = (JSONObject) obj;
-                obj = jsonObj.get(attribute);
-            }
+    // null unless ClientConfig.setResponseCacheBytes was set
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    // null unless ClientConfig.setAdaptiveConcurrency was set
+    public AdaptiveLimiter getLimiter() {
+        return limiter;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(connectionManager != null) {
+            Metrics.POOL_LEASED.unregister(poolLeased);
+            Metrics.POOL_AVAILABLE.unregister(poolAvailable);
+            Metrics.POOL_PENDING.unregister(poolPending);
+        }
+        if(limiter != null) {
+            Metrics.CONCURRENCY_LIMIT.unregister(concurrencyLimit);
+            Metrics.LIMITER_WAITING.unregister(limiterWaiting);
         }
+        closeTransport();
+        if(responseCache != null) {
+            responseCache.flush();
+        }
+        closeKeyring();
+    }
 
-        if(obj instanceof String) {
-            String role = (String) obj;
-            if(AUTHENTICATION_KEY_ROLE_PUBLIC.equalsIgnoreCase(role)) {
-                return true;
-            }
+    private void closeKeyring() throws IOException {
+        if(keyring != null) {
+            keyring.close();
         }
-        return false;
     }
 
-    private String parseHttpResponse(HttpResponse response) {
-        try {
-            return EntityUtils.toString(response.getEntity());
-        } catch (IOException e) {
-            throw new RuntimeException("Error on parsing response: " + response);
+    private void closeTransport() throws IOException {
+        if(http2 != null) {
+            http2.close();
+        } else {
+            httpClient.close();
         }
     }
 
+    // a request signed ahead of its send; a Date the signer added is renewed when the signature got too old
+    static final class Signed {
+        // far inside the usual skew windows (Verifier allows 5 minutes by default)
+        static final long MAX_AGE_MS = 5_000;
+
+        private final HttpRequestBase request;
+        private final boolean ownDate;
+        private final long at = System.currentTimeMillis();
+
+        private Signed(final HttpRequestBase request, final boolean ownDate) {
+            this.request = request;
+            this.ownDate = ownDate;
+        }
+
+        // a Date given by the caller is kept as it is
+        private boolean isStale() {
+            return ownDate && System.currentTimeMillis() - at > MAX_AGE_MS;
+        }
+    }
 }
@@ -0,0 +1,64 @@
+package com.vassa.client;
+
+import org.apache.http.Header;
+
+public class ApiResponse {
+
+    private final int status;
+    private final String statusLine;
+    private final Header[] headers;
+    private final boolean rolePublic;
+    private final String body;
+    private final long bodyBytes;
+
+    public ApiResponse(final int status, final String statusLine, final Header[] headers,
+                       final boolean rolePublic, final String body) {
+        this(status, statusLine, headers, rolePublic, body, body == null ? 0 : body.length());
+    }
+
+    public ApiResponse(final int status, final String statusLine, final Header[] headers,
+                       final boolean rolePublic, final String body, final long bodyBytes) {
+        this.status = status;
+        this.statusLine = statusLine;
+        this.headers = headers;
+        this.rolePublic = rolePublic;
+        this.body = body;
+        this.bodyBytes = bodyBytes;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getStatusLine() {
+        return statusLine;
+    }
+
+    public Header[] getHeaders() {
+        return headers;
+    }
+
+    public String getFirstHeader(final String name) {
+        for (Header header : headers) {
+            if(header.getName().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    // true when the server answered 200 with authentication_key.role = PUBLIC
+    public boolean isRolePublic() {
+        return rolePublic;
+    }
+
+    // null unless the status is 200 and the ResponseSink keeps the body
+    public String getBody() {
+        return body;
+    }
+
+    // size of a 200 body as received, whatever the sink did with it
+    public long getBodyBytes() {
+        return bodyBytes;
+    }
+}
@@ -0,0 +1,189 @@
+package com.vassa.client;
+
+import com.google.common.io.ByteStreams;
+import com.vassa.security.Keyring;
+import com.vassa.security.RequestSigner;
+import com.vassa.security.SignatureCache;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Non-blocking counterpart of ApiClient: requests are signed on the calling thread and
+// multiplexed over a few IO reactor threads, every call returns a CompletableFuture.
+public class AsyncApiClient implements Closeable {
+
+    private final String endpoint;
+    private final Keyring keyring;
+    private final RequestSigner signer;
+    private final CloseableHttpAsyncClient httpClient;
+    private final ExecutorService callbackExecutor;
+    private final PayloadDigest payloadDigest;
+    private final ContentEncoding requestEncoding;
+    private final ResponseSink.Factory responseSink;
+
+    public AsyncApiClient(final String endpoint, final String keyId, final String pathFile)
+            throws IOException, NoSuchAlgorithmException, InvalidKeySpecException {
+        this(endpoint, keyId, pathFile, ClientConfig.defaults());
+    }
+
+    public AsyncApiClient(final String endpoint, final String keyId, final String pathFile, final ClientConfig config)
+            throws IOException, NoSuchAlgorithmException, InvalidKeySpecException {
+        SignedRequests.checkKeyId(keyId);
+        SignedRequests.checkFileExists(pathFile);
+        this.endpoint = endpoint;
+        this.payloadDigest = config.getPayloadDigest();
+        this.requestEncoding = config.getRequestEncoding();
+        this.responseSink = config.getResponseSink();
+        this.keyring = SignedRequests.openKeyring(pathFile);
+        this.signer = SignedRequests.newSigner(keyId, pathFile, keyring, config);
+        this.callbackExecutor = config.isVirtualThreads() ? newVirtualThreadExecutor() : null;
+        this.httpClient = HttpAsyncClients.custom()
+                .setConnectionManager(buildConnectionManager(config))
+                .build();
+        this.httpClient.start();
+    }
+
+    private static PoolingNHttpClientConnectionManager buildConnectionManager(final ClientConfig config)
+            throws IOReactorException {
+        IOReactorConfig reactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(config.getIoThreads())
+                .build();
+        PoolingNHttpClientConnectionManager manager =
+                new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(reactorConfig));
+        manager.setMaxTotal(config.getMaxTotal());
+        manager.setDefaultMaxPerRoute(config.getMaxPerRoute());
+        return manager;
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() only exists on JDK 21+, older JDKs complete on the IO threads
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    public CompletableFuture<ApiResponse> getMethod(String payload) {
+        return execute(HttpMethod.GET, null, payload, null);
+    }
+
+    public CompletableFuture<ApiResponse> postMethod(String payload) {
+        return execute(HttpMethod.POST, null, payload, null);
+    }
+
+    public CompletableFuture<ApiResponse> putMethod(String payload) {
+        return execute(HttpMethod.PUT, null, payload, null);
+    }
+
+    public CompletableFuture<ApiResponse> deleteMethod(String payload) {
+        return execute(HttpMethod.DELETE, null, payload, null);
+    }
+
+    public CompletableFuture<ApiResponse> execute(final HttpMethod method, final String target, final String payload,
+                                                  final Map<String, String> headers) {
+        return execute(method, target, Payload.of(payload), headers);
+    }
+
+    public CompletableFuture<ApiResponse> execute(final HttpMethod method, final String target, final Payload payload,
+                                                  final Map<String, String> headers) {
+        final CompletableFuture<ApiResponse> future = new CompletableFuture<>();
+        final HttpRequestBase request;
+        try {
+            request = SignedRequests.build(method, SignedRequests.resolve(endpoint, target), payload, payloadDigest,
+                    requestEncoding, headers, true);
+            signer.signRequest(request);
+            // the async client has no content-compression interceptor: it asks for compressed responses here,
+            // after signing since the header is not signed, and decodes them in complete()
+            request.setHeader(ContentEncoding.ACCEPT_HEADER, ContentEncoding.ACCEPTED);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        httpClient.execute(request, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(final HttpResponse response) {
+                if(callbackExecutor != null) {
+                    callbackExecutor.execute(() -> complete(future, response));
+                } else {
+                    complete(future, response);
+                }
+            }
+
+            @Override
+            public void failed(final Exception e) {
+                future.completeExceptionally(new RuntimeException("Exception during call api: " + e, e));
+            }
+
+            @Override
+            public void cancelled() {
+                future.cancel(false);
+            }
+        });
+        return future;
+    }
+
+    private void complete(final CompletableFuture<ApiResponse> future, final HttpResponse response) {
+        try {
+            future.complete(toApiResponse(response));
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    private ApiResponse toApiResponse(final HttpResponse response) throws IOException {
+        int status = response.getStatusLine().getStatusCode();
+        Header encodingHeader = response.getFirstHeader(ContentEncoding.HEADER);
+        String encoding = encodingHeader == null ? null : encodingHeader.getValue();
+        if(status == HttpStatus.SC_OK) {
+            ResponseReader.Result result = ResponseReader.read(response.getEntity(), encoding, responseSink.create());
+            return new ApiResponse(status, response.getStatusLine().toString(), response.getAllHeaders(),
+                    result.rolePublic, result.body, result.bytes);
+        }
+        HttpEntity entity = response.getEntity();
+        String body = null;
+        if(entity != null) {
+            try (InputStream in = ContentEncoding.decode(encoding, entity.getContent())) {
+                body = new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+            }
+        }
+        return new ApiResponse(status, response.getStatusLine().toString(), response.getAllHeaders(),
+                false, body, 0);
+    }
+
+    // null unless ClientConfig.setSignatureCacheSize was set
+    public SignatureCache getSignatureCache() {
+        return signer.getSignatureCache();
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+        if(keyring != null) {
+            keyring.close();
+        }
+        if(callbackExecutor != null) {
+            callbackExecutor.shutdown();
+        }
+    }
+}
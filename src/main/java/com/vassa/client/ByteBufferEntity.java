@@ -0,0 +1,104 @@
+package com.vassa.client;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.HttpAsyncContentProducer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+// A ByteBuffer as a request body, typically a slice of a memory-mapped file. The async client writes it to the
+// socket channel straight from the buffer, the blocking client copies it through a small array onto the
+// connection stream. The buffer itself is never moved, every send works on a duplicate.
+final class ByteBufferEntity extends AbstractHttpEntity implements HttpAsyncContentProducer {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private final ByteBuffer content;
+    private ByteBuffer producing;
+
+    ByteBufferEntity(final ByteBuffer content, final ContentType contentType) {
+        this.content = content;
+        setContentType(contentType.toString());
+    }
+
+    static InputStream stream(final ByteBuffer content) {
+        final ByteBuffer source = content.duplicate();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return source.hasRemaining() ? source.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(final byte[] b, final int off, final int len) {
+                if(len == 0) {
+                    return 0;
+                }
+                if(!source.hasRemaining()) {
+                    return -1;
+                }
+                final int n = Math.min(len, source.remaining());
+                source.get(b, off, n);
+                return n;
+            }
+
+            @Override
+            public int available() {
+                return source.remaining();
+            }
+        };
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return content.remaining();
+    }
+
+    @Override
+    public InputStream getContent() {
+        return stream(content);
+    }
+
+    @Override
+    public void writeTo(final OutputStream out) throws IOException {
+        final ByteBuffer source = content.duplicate();
+        final byte[] chunk = new byte[Math.min(CHUNK_SIZE, Math.max(source.remaining(), 1))];
+        while (source.hasRemaining()) {
+            final int n = Math.min(chunk.length, source.remaining());
+            source.get(chunk, 0, n);
+            out.write(chunk, 0, n);
+        }
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    @Override
+    public void produceContent(final ContentEncoder encoder, final IOControl ioControl) throws IOException {
+        if(producing == null) {
+            producing = content.duplicate();
+        }
+        encoder.write(producing);
+        if(!producing.hasRemaining()) {
+            encoder.complete();
+            producing = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        producing = null;
+    }
+}
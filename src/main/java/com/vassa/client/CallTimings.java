@@ -0,0 +1,32 @@
+package com.vassa.client;
+
+// Connection lease wait and time to first byte of the ApiClient call running on this thread, filled in by
+// TimedConnectionManager and TimedRequestExecutor while a flight recording wants them for the call event.
+// The blocking client leases, sends and receives on the calling thread.
+final class CallTimings {
+
+    private static final ThreadLocal<CallTimings> CURRENT = new ThreadLocal<>();
+    // skips the thread local lookup until the first recorded call
+    private static volatile boolean used;
+
+    long poolWaitNanos;
+    long timeToFirstByteNanos;
+
+    private CallTimings() {
+    }
+
+    static CallTimings begin() {
+        used = true;
+        CallTimings timings = new CallTimings();
+        CURRENT.set(timings);
+        return timings;
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    static CallTimings current() {
+        return used ? CURRENT.get() : null;
+    }
+}
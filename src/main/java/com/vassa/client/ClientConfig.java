@@ -0,0 +1,260 @@
+package com.vassa.client;
+
+import com.vassa.domain.Algorithm;
+import com.vassa.util.CommandLine;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class ClientConfig {
+
+    private int maxPerRoute = 20;
+    private int maxTotal = 50;
+    private long idleEvictionMs = 30_000;
+    private int validateAfterInactivityMs = 2_000;
+    private int warmupConnections = 1;
+    private int ioThreads = Runtime.getRuntime().availableProcessors();
+    private boolean virtualThreads;
+    private PayloadDigest payloadDigest = PayloadDigest.SHA256;
+    private long signatureCacheSize;
+    private Algorithm algorithm;
+    private ResponseSink.Factory responseSink = ResponseSinks.string();
+    private boolean http2;
+    private boolean adaptiveConcurrency;
+    private ContentEncoding requestEncoding;
+    private ResultSink resultSink;
+    private long responseCacheBytes;
+    private Path responseCacheDirectory;
+
+    public static ClientConfig defaults() {
+        return new ClientConfig();
+    }
+
+    // options shared by every command line mode
+    public static ClientConfig from(final CommandLine commandLine) {
+        ClientConfig config = new ClientConfig();
+        if(commandLine.has("digest")) {
+            config.setPayloadDigest(PayloadDigest.get(commandLine.option("digest", null)));
+        }
+        config.setSignatureCacheSize(commandLine.longOption("signature-cache", 0));
+        if(commandLine.has("discard-body")) {
+            config.setResponseSink(ResponseSinks.discard());
+        } else if(commandLine.has("body-out")) {
+            config.setResponseSink(ResponseSinks.file(Paths.get(commandLine.option("body-out", null))));
+        }
+        config.setHttp2(commandLine.has("http2"));
+        config.setAdaptiveConcurrency(commandLine.has("adaptive"));
+        if(commandLine.has("compress")) {
+            config.setRequestEncoding(ContentEncoding.get(commandLine.option("compress", "gzip")));
+        }
+        config.setResponseCacheBytes(sizeOption(commandLine, "response-cache"));
+        if(commandLine.has("response-cache-dir")) {
+            config.setResponseCacheDirectory(Paths.get(commandLine.option("response-cache-dir", null)));
+        }
+        if(commandLine.has("algorithm")) {
+            String name = commandLine.option("algorithm", null);
+            Algorithm algorithm = Algorithm.get(name);
+            if(algorithm == null) {
+                throw new IllegalArgumentException("Signature algorithm is not valid: " + name);
+            }
+            config.setAlgorithm(algorithm);
+        }
+        return config;
+    }
+
+    // bytes, or with a k, m or g suffix
+    private static long sizeOption(final CommandLine commandLine, final String name) {
+        String value = commandLine.option(name, "0").trim().toLowerCase();
+        long unit = 1;
+        if(value.endsWith("k") || value.endsWith("m") || value.endsWith("g")) {
+            unit = value.endsWith("k") ? 1L << 10 : value.endsWith("m") ? 1L << 20 : 1L << 30;
+            value = value.substring(0, value.length() - 1);
+        }
+        try {
+            return Long.parseLong(value) * unit;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option --" + name + " is not a size: " + commandLine.option(name, null));
+        }
+    }
+
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    public ClientConfig setMaxPerRoute(int maxPerRoute) {
+        if(maxPerRoute < 1) {
+            throw new IllegalArgumentException("Max connections per route is not valid: " + maxPerRoute);
+        }
+        this.maxPerRoute = maxPerRoute;
+        return this;
+    }
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public ClientConfig setMaxTotal(int maxTotal) {
+        if(maxTotal < 1) {
+            throw new IllegalArgumentException("Max total connections is not valid: " + maxTotal);
+        }
+        this.maxTotal = maxTotal;
+        return this;
+    }
+
+    public long getIdleEvictionMs() {
+        return idleEvictionMs;
+    }
+
+    public ClientConfig setIdleEvictionMs(long idleEvictionMs) {
+        this.idleEvictionMs = idleEvictionMs;
+        return this;
+    }
+
+    public int getValidateAfterInactivityMs() {
+        return validateAfterInactivityMs;
+    }
+
+    public ClientConfig setValidateAfterInactivityMs(int validateAfterInactivityMs) {
+        this.validateAfterInactivityMs = validateAfterInactivityMs;
+        return this;
+    }
+
+    public int getWarmupConnections() {
+        return warmupConnections;
+    }
+
+    public ClientConfig setWarmupConnections(int warmupConnections) {
+        this.warmupConnections = Math.max(0, warmupConnections);
+        return this;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public ClientConfig setIoThreads(int ioThreads) {
+        if(ioThreads < 1) {
+            throw new IllegalArgumentException("IO threads is not valid: " + ioThreads);
+        }
+        this.ioThreads = ioThreads;
+        return this;
+    }
+
+    // async client only: complete response futures on virtual threads when the JDK has them
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public ClientConfig setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+
+    public PayloadDigest getPayloadDigest() {
+        return payloadDigest;
+    }
+
+    public ClientConfig setPayloadDigest(PayloadDigest payloadDigest) {
+        if(payloadDigest == null) {
+            throw new IllegalArgumentException("Digest algorithm is required");
+        }
+        this.payloadDigest = payloadDigest;
+        return this;
+    }
+
+    // 0 disables the cache of signatures for identical signing strings
+    public long getSignatureCacheSize() {
+        return signatureCacheSize;
+    }
+
+    public ClientConfig setSignatureCacheSize(long signatureCacheSize) {
+        this.signatureCacheSize = Math.max(0, signatureCacheSize);
+        return this;
+    }
+
+    // null signs with the default algorithm for the key type (rsa-sha256 for RSA keys)
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public ClientConfig setAlgorithm(Algorithm algorithm) {
+        this.algorithm = algorithm;
+        return this;
+    }
+
+    // what happens to 200 bodies, ResponseSinks.string() by default
+    public ResponseSink.Factory getResponseSink() {
+        return responseSink;
+    }
+
+    public ClientConfig setResponseSink(ResponseSink.Factory responseSink) {
+        if(responseSink == null) {
+            throw new IllegalArgumentException("Response sink is required");
+        }
+        this.responseSink = responseSink;
+        return this;
+    }
+
+    // ApiClient only: multiplex the calls over one HTTP/2 connection per host (h2c for http:// endpoints)
+    // instead of the HTTP/1.1 pool, maxPerRoute, maxTotal and warmupConnections are then unused
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public ClientConfig setHttp2(boolean http2) {
+        this.http2 = http2;
+        return this;
+    }
+
+    // ApiClient only: let an AdaptiveLimiter find how many calls may be in flight, between 1 and maxPerRoute
+    public boolean isAdaptiveConcurrency() {
+        return adaptiveConcurrency;
+    }
+
+    public ClientConfig setAdaptiveConcurrency(boolean adaptiveConcurrency) {
+        this.adaptiveConcurrency = adaptiveConcurrency;
+        return this;
+    }
+
+    // null sends POST/PUT bodies uncompressed; otherwise the digest is computed over the compressed body
+    public ContentEncoding getRequestEncoding() {
+        return requestEncoding;
+    }
+
+    public ClientConfig setRequestEncoding(ContentEncoding requestEncoding) {
+        this.requestEncoding = requestEncoding;
+        return this;
+    }
+
+    // ApiClient only: null prints the outcome of getMethod/postMethod/... calls; otherwise every call, execute()
+    // included, is recorded there and nothing is printed. The sink is not closed by the client
+    public ResultSink getResultSink() {
+        return resultSink;
+    }
+
+    public ClientConfig setResultSink(ResultSink resultSink) {
+        this.resultSink = resultSink;
+        return this;
+    }
+
+    // ApiClient only: 0 disables the cache of GET responses revalidated with ETag / Last-Modified, see ResponseCache;
+    // unused with a file or custom ResponseSink, a 304 could not refill them
+    public long getResponseCacheBytes() {
+        return responseCacheBytes;
+    }
+
+    public ClientConfig setResponseCacheBytes(long responseCacheBytes) {
+        this.responseCacheBytes = Math.max(0, responseCacheBytes);
+        return this;
+    }
+
+    // null keeps the response cache in memory only
+    public Path getResponseCacheDirectory() {
+        return responseCacheDirectory;
+    }
+
+    public ClientConfig setResponseCacheDirectory(Path responseCacheDirectory) {
+        this.responseCacheDirectory = responseCacheDirectory;
+        return this;
+    }
+}
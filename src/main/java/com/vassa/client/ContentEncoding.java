@@ -0,0 +1,154 @@
+package com.vassa.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+// Content-Encoding of request bodies. encode() compresses while the stream is read, so a body is never
+// held compressed and uncompressed at once; the output only depends on the input, which lets the digest
+// pass and the send pass of a file payload produce the same bytes.
+public enum ContentEncoding {
+
+    GZIP("gzip"),
+    // zlib format, what HTTP calls deflate
+    DEFLATE("deflate"),
+    ;
+
+    public static final String HEADER = "Content-Encoding";
+    public static final String ACCEPT_HEADER = "Accept-Encoding";
+    // what every client decodes in responses
+    public static final String ACCEPTED = "gzip, deflate";
+
+    private final String name;
+
+    ContentEncoding(final String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static ContentEncoding get(final String name) {
+        for (ContentEncoding encoding : values()) {
+            if(encoding.name.equalsIgnoreCase(name)) {
+                return encoding;
+            }
+        }
+        throw new IllegalArgumentException("Content encoding is not valid: " + name);
+    }
+
+    public InputStream encode(final InputStream raw) {
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, this == GZIP);
+        if(this == GZIP) {
+            final CRC32 crc = new CRC32();
+            return new GzipStream(new Deflating(new CheckedInputStream(raw, crc), deflater), deflater, crc);
+        }
+        return new Deflating(raw, deflater);
+    }
+
+    // the response value of Content-Encoding, null or identity leave the stream alone
+    static InputStream decode(final String contentEncoding, final InputStream in) throws IOException {
+        if(contentEncoding == null) {
+            return in;
+        }
+        switch (contentEncoding.trim().toLowerCase()) {
+            case "gzip":
+            case "x-gzip":
+                return new GZIPInputStream(in);
+            case "deflate":
+                return new InflaterInputStream(in);
+            case "identity":
+            case "":
+                return in;
+            default:
+                throw new IOException("Unsupported response Content-Encoding: " + contentEncoding);
+        }
+    }
+
+    // a DeflaterInputStream given its own Deflater leaves it open
+    private static final class Deflating extends DeflaterInputStream {
+        private final Deflater deflater;
+
+        private Deflating(final InputStream in, final Deflater deflater) {
+            super(in, deflater);
+            this.deflater = deflater;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    // RFC 1952 header, the raw deflate stream, then CRC-32 and size of the input, both little endian
+    private static final class GzipStream extends InputStream {
+        private static final byte[] HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+        private final InputStream body;
+        private final Deflater deflater;
+        private final CRC32 crc;
+        private byte[] frame = HEADER;
+        private int position;
+        private boolean bodyDone;
+
+        private GzipStream(final InputStream body, final Deflater deflater, final CRC32 crc) {
+            this.body = body;
+            this.deflater = deflater;
+            this.crc = crc;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if(len == 0) {
+                return 0;
+            }
+            if(frame != null && position < frame.length) {
+                int n = Math.min(len, frame.length - position);
+                System.arraycopy(frame, position, b, off, n);
+                position += n;
+                return n;
+            }
+            if(bodyDone) {
+                return -1;
+            }
+            int n = body.read(b, off, len);
+            if(n >= 0) {
+                return n;
+            }
+            bodyDone = true;
+            frame = trailer(crc.getValue(), deflater.getBytesRead());
+            position = 0;
+            return read(b, off, len);
+        }
+
+        private static byte[] trailer(final long crc, final long size) {
+            byte[] trailer = new byte[8];
+            for (int i = 0; i < 4; i++) {
+                trailer[i] = (byte) (crc >>> (8 * i));
+                trailer[4 + i] = (byte) (size >>> (8 * i));
+            }
+            return trailer;
+        }
+
+        @Override
+        public void close() throws IOException {
+            body.close();
+        }
+    }
+}
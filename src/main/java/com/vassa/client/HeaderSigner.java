@@ -0,0 +1,50 @@
+package com.vassa.client;
+
+import com.vassa.security.Keyring;
+import com.vassa.security.RequestSigner;
+import org.apache.http.Header;
+import org.apache.http.client.methods.HttpRequestBase;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Signs without sending: returns the digest, Date, Authorization (and Content-Type) headers
+// a request needs, for callers that send it with their own HTTP stack.
+public class HeaderSigner implements Closeable {
+
+    private final Keyring keyring;
+    private final RequestSigner signer;
+    private final PayloadDigest payloadDigest;
+
+    public HeaderSigner(final String keyId, final String pathFile, final ClientConfig config)
+            throws IOException, NoSuchAlgorithmException, InvalidKeySpecException {
+        SignedRequests.checkKeyId(keyId);
+        SignedRequests.checkFileExists(pathFile);
+        this.payloadDigest = config.getPayloadDigest();
+        this.keyring = SignedRequests.openKeyring(pathFile);
+        this.signer = SignedRequests.newSigner(keyId, pathFile, keyring, config);
+    }
+
+    public Map<String, String> sign(final HttpMethod method, final String url, final Payload payload,
+                                    final Map<String, String> headers) {
+        // never compressed: the caller sends the body, the digest has to match it as given
+        HttpRequestBase request = SignedRequests.build(method, url, payload, payloadDigest, null, headers, false);
+        signer.signRequest(request);
+        Map<String, String> signed = new LinkedHashMap<>();
+        for (Header header : request.getAllHeaders()) {
+            signed.put(header.getName(), header.getValue());
+        }
+        return signed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(keyring != null) {
+            keyring.close();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.vassa.client;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.H2AsyncClientBuilder;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http2.config.H2Config;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.Timeout;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.util.EntityUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+// HTTP/2 for ApiClient: one multiplexed connection per host carries every concurrent request as its own stream,
+// TLS endpoints negotiate h2 through ALPN and http:// ones speak h2c with prior knowledge. Requests are built and
+// signed as HttpClient 4 requests like on HTTP/1.1 and copied header by header, so the signed (request-target),
+// Date and digest are exactly what goes on the wire.
+class Http2Transport implements Closeable {
+
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final String HTTP_2 = "HTTP/2.0";
+
+    private final CloseableHttpAsyncClient client;
+
+    Http2Transport(final ClientConfig config, final int connectTimeoutMs) {
+        this.client = H2AsyncClientBuilder.create()
+                .setIOReactorConfig(IOReactorConfig.custom()
+                        .setIoThreadCount(config.getIoThreads())
+                        .setTcpNoDelay(true)
+                        .build())
+                .setH2Config(H2Config.custom()
+                        .setPushEnabled(false)
+                        .build())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .build())
+                .disableAutomaticRetries()
+                .build();
+        this.client.start();
+    }
+
+    void checkEndpoint(final String endpoint) throws IOException {
+        int status = send(SimpleHttpRequest.create("GET", endpoint)).getCode();
+        if(status >= HttpStatus.SC_BAD_REQUEST) {
+            throw new IOException("Server returned HTTP response code: " + status + " for URL: " + endpoint);
+        }
+    }
+
+    // request must already be signed
+    ApiResponse execute(final HttpRequestBase request, final ResponseSink sink) throws IOException {
+        SimpleHttpResponse response = send(toSimpleRequest(request));
+        int status = response.getCode();
+        Header[] headers = toHeaders(response.getHeaders());
+        if(status == HttpStatus.SC_OK) {
+            byte[] body = response.getBodyBytes();
+            org.apache.hc.core5.http.Header encoding = response.getFirstHeader(ContentEncoding.HEADER);
+            ResponseReader.Result result = ResponseReader.read(body == null ? null : new ByteArrayEntity(body),
+                    encoding == null ? null : encoding.getValue(), sink);
+            return new ApiResponse(status, statusLine(status), headers, result.rolePublic, result.body, result.bytes);
+        }
+        return new ApiResponse(status, statusLine(status), headers, false, null, 0);
+    }
+
+    // the body is buffered, h2 frames it from memory; file payloads are read here once
+    private static SimpleHttpRequest toSimpleRequest(final HttpRequestBase request) throws IOException {
+        SimpleHttpRequest simple = SimpleHttpRequest.create(request.getMethod(), request.getURI());
+        simple.setHeader(ContentEncoding.ACCEPT_HEADER, ContentEncoding.ACCEPTED);
+        String contentType = null;
+        for (Header header : request.getAllHeaders()) {
+            if(CONTENT_TYPE.equalsIgnoreCase(header.getName())) {
+                contentType = header.getValue();
+            } else {
+                simple.addHeader(header.getName(), header.getValue());
+            }
+        }
+        if(request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if(entity != null) {
+                simple.setBody(EntityUtils.toByteArray(entity),
+                        contentType != null ? ContentType.parse(contentType) : ContentType.APPLICATION_JSON);
+            }
+        }
+        return simple;
+    }
+
+    private SimpleHttpResponse send(final SimpleHttpRequest request) throws IOException {
+        Future<SimpleHttpResponse> future = client.execute(request, null);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + request.getRequestUri(), e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(String.valueOf(e.getCause()), e.getCause());
+        }
+    }
+
+    private static Header[] toHeaders(final org.apache.hc.core5.http.Header[] headers) {
+        Header[] converted = new Header[headers.length];
+        for (int i = 0; i < headers.length; i++) {
+            converted[i] = new BasicHeader(headers[i].getName(), headers[i].getValue());
+        }
+        return converted;
+    }
+
+    // h2 has no reason phrase, the HTTP/1.1 one keeps the printed status lines familiar
+    private static String statusLine(final int status) {
+        String reason = EnglishReasonPhraseCatalog.INSTANCE.getReason(status, Locale.ENGLISH);
+        return reason == null ? HTTP_2 + " " + status : HTTP_2 + " " + status + " " + reason;
+    }
+
+    @Override
+    public void close() {
+        client.close(CloseMode.GRACEFUL);
+    }
+}
@@ -0,0 +1,327 @@
+package com.vassa.client;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.nio.entity.NFileEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+public abstract class Payload {
+
+    public static final String FILE_PREFIX = "@";
+    static final ContentType JSON = ContentType.APPLICATION_JSON;
+    private static final int BUFFER_SIZE = 8192;
+
+    private volatile Encoded encoded;
+
+    public static Payload of(final String payload) {
+        return new Text(payload == null ? "" : payload);
+    }
+
+    public static Payload ofFile(final Path path) {
+        if(!Files.isRegularFile(path)) {
+            throw new IllegalArgumentException("Not found file in path: " + path);
+        }
+        return new FileBacked(path);
+    }
+
+    // a slice of a larger buffer, e.g. a memory-mapped corpus, sent without copying it to the heap. digest is the
+    // value precomputed with algorithm, returned as is when the client uses that algorithm; both may be null
+    public static Payload of(final ByteBuffer buffer, final PayloadDigest algorithm, final String digest) {
+        return new Buffered(buffer.slice(), algorithm, digest);
+    }
+
+    // "@/path/to/file.json" is read from the file, anything else is the payload itself
+    public static Payload parse(final String argument) {
+        if(argument != null && argument.startsWith(FILE_PREFIX)) {
+            return ofFile(Paths.get(argument.substring(FILE_PREFIX.length())));
+        }
+        return of(argument);
+    }
+
+    public abstract long length();
+
+    public abstract String digest(PayloadDigest algorithm);
+
+    // entity for the blocking client
+    public abstract HttpEntity toEntity();
+
+    // entity for the non-blocking client
+    public HttpEntity toAsyncEntity() {
+        return toEntity();
+    }
+
+    abstract InputStream openStream() throws IOException;
+
+    // the payload bytes as sent without Content-Encoding
+    public void copyTo(final OutputStream out) throws IOException {
+        try (InputStream in = openStream()) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+    }
+
+    // the payload as sent with Content-Encoding: length, digest and entity are those of the compressed bytes.
+    // Kept with this payload, so a payload sent many times (bench) is compressed once when it is in memory.
+    public Payload encode(final ContentEncoding encoding) {
+        Encoded current = encoded;
+        if(current == null || current.encoding != encoding) {
+            current = new Encoded(this, encoding);
+            encoded = current;
+        }
+        return current;
+    }
+
+    private static final class Text extends Payload {
+
+        private final byte[] bytes;
+
+        private Text(final String payload) {
+            this.bytes = payload.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public long length() {
+            return bytes.length;
+        }
+
+        @Override
+        public String digest(final PayloadDigest algorithm) {
+            return algorithm.digest(bytes);
+        }
+
+        @Override
+        public HttpEntity toEntity() {
+            return new ByteArrayEntity(bytes, JSON);
+        }
+
+        @Override
+        InputStream openStream() {
+            return new ByteArrayInputStream(bytes);
+        }
+    }
+
+    private static final class FileBacked extends Payload {
+
+        // map at most this much of the file at a time, the digest never needs the whole file on the heap
+        private static final long MAP_WINDOW = 64L * 1024 * 1024;
+
+        private final Path path;
+
+        private FileBacked(final Path path) {
+            this.path = path;
+        }
+
+        @Override
+        public long length() {
+            return path.toFile().length();
+        }
+
+        @Override
+        public String digest(final PayloadDigest algorithm) {
+            MessageDigest digest = algorithm.start();
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                for (long position = 0; position < size; position += MAP_WINDOW) {
+                    MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                            Math.min(MAP_WINDOW, size - position));
+                    digest.update(window);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot read payload file " + path + ": " + e);
+            }
+            return algorithm.format(digest.digest());
+        }
+
+        @Override
+        public HttpEntity toEntity() {
+            return new FileEntity(file(), JSON);
+        }
+
+        // NFileEntity hands the file channel to the socket with transferTo, no copy through the heap
+        @Override
+        public HttpEntity toAsyncEntity() {
+            return new NFileEntity(file(), JSON);
+        }
+
+        @Override
+        InputStream openStream() throws IOException {
+            return Files.newInputStream(path);
+        }
+
+        private File file() {
+            return path.toFile();
+        }
+    }
+
+    private static final class Buffered extends Payload {
+
+        private final ByteBuffer buffer;
+        private final PayloadDigest algorithm;
+        private final String digest;
+
+        private Buffered(final ByteBuffer buffer, final PayloadDigest algorithm, final String digest) {
+            this.buffer = buffer;
+            this.algorithm = algorithm;
+            this.digest = digest;
+        }
+
+        @Override
+        public long length() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public String digest(final PayloadDigest algorithm) {
+            if(digest != null && algorithm == this.algorithm) {
+                return digest;
+            }
+            MessageDigest computed = algorithm.start();
+            computed.update(buffer.duplicate());
+            return algorithm.format(computed.digest());
+        }
+
+        @Override
+        public HttpEntity toEntity() {
+            return new ByteBufferEntity(buffer, JSON);
+        }
+
+        @Override
+        InputStream openStream() {
+            return ByteBufferEntity.stream(buffer);
+        }
+    }
+
+    // In-memory payloads are compressed once up front. Files are compressed twice while streaming, once into
+    // the digest and once onto the connection, rather than holding the compressed file anywhere.
+    private static final class Encoded extends Payload {
+
+        private final Payload source;
+        private final ContentEncoding encoding;
+        private final byte[] bytes;
+        private volatile long length = -1;
+
+        private Encoded(final Payload source, final ContentEncoding encoding) {
+            this.source = source;
+            this.encoding = encoding;
+            this.bytes = source instanceof Text ? compress(source, encoding) : null;
+        }
+
+        private static byte[] compress(final Payload source, final ContentEncoding encoding) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (InputStream in = encoding.encode(source.openStream())) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int n;
+                while ((n = in.read(buffer)) >= 0) {
+                    out.write(buffer, 0, n);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot compress payload: " + e);
+            }
+            return out.toByteArray();
+        }
+
+        // of a file: known once the digest has been computed, -1 before
+        @Override
+        public long length() {
+            return bytes != null ? bytes.length : length;
+        }
+
+        @Override
+        public String digest(final PayloadDigest algorithm) {
+            if(bytes != null) {
+                return algorithm.digest(bytes);
+            }
+            MessageDigest digest = algorithm.start();
+            long count = 0;
+            try (InputStream in = openStream()) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int n;
+                while ((n = in.read(buffer)) >= 0) {
+                    digest.update(buffer, 0, n);
+                    count += n;
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot compress payload: " + e);
+            }
+            length = count;
+            return algorithm.format(digest.digest());
+        }
+
+        @Override
+        public HttpEntity toEntity() {
+            AbstractHttpEntity entity = bytes != null ? new ByteArrayEntity(bytes, JSON) : new StreamingEntity();
+            entity.setContentEncoding(encoding.getName());
+            return entity;
+        }
+
+        @Override
+        InputStream openStream() throws IOException {
+            return bytes != null ? new ByteArrayInputStream(bytes) : encoding.encode(source.openStream());
+        }
+
+        @Override
+        public Payload encode(final ContentEncoding encoding) {
+            throw new IllegalStateException("Payload is already encoded with " + this.encoding.getName());
+        }
+
+        // compresses again on every send, with the length found by the digest pass (chunked without it)
+        private final class StreamingEntity extends AbstractHttpEntity {
+
+            private StreamingEntity() {
+                setContentType(JSON.toString());
+            }
+
+            @Override
+            public boolean isRepeatable() {
+                return true;
+            }
+
+            @Override
+            public long getContentLength() {
+                return length;
+            }
+
+            @Override
+            public InputStream getContent() throws IOException {
+                return openStream();
+            }
+
+            @Override
+            public void writeTo(final OutputStream out) throws IOException {
+                try (InputStream in = openStream()) {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int n;
+                    while ((n = in.read(buffer)) >= 0) {
+                        out.write(buffer, 0, n);
+                    }
+                }
+            }
+
+            @Override
+            public boolean isStreaming() {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.vassa.client;
+
+import com.google.common.io.BaseEncoding;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+public enum PayloadDigest {
+
+    // hex encoded value, what the digest header has always contained
+    SHA256("sha256", "SHA-256", false),
+    SHA512("sha512", "SHA-512", false),
+
+    // RFC 3230 instance digest: "SHA-256=<base64>"
+    RFC3230_SHA256("rfc3230-sha256", "SHA-256", true),
+    RFC3230_SHA512("rfc3230-sha512", "SHA-512", true),
+    ;
+
+    private final String name;
+    private final String jvmName;
+    private final boolean rfc3230;
+    private final ThreadLocal<MessageDigest> digests;
+
+    PayloadDigest(final String name, final String jvmName, final boolean rfc3230) {
+        this.name = name;
+        this.jvmName = jvmName;
+        this.rfc3230 = rfc3230;
+        this.digests = ThreadLocal.withInitial(this::newDigest);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static PayloadDigest get(final String name) {
+        for (PayloadDigest digest : values()) {
+            if(digest.name.equalsIgnoreCase(name)) {
+                return digest;
+            }
+        }
+        throw new IllegalArgumentException("Digest algorithm is not valid: " + name);
+    }
+
+    public String digest(final byte[] bytes) {
+        MessageDigest digest = start();
+        digest.update(bytes);
+        return format(digest.digest());
+    }
+
+    // incremental use: start(), update(...) with every chunk, then format(digest.digest())
+    public MessageDigest start() {
+        MessageDigest digest = digests.get();
+        digest.reset();
+        return digest;
+    }
+
+    public String format(final byte[] hash) {
+        if(rfc3230) {
+            return jvmName + "=" + Base64.getEncoder().encodeToString(hash);
+        }
+        return BaseEncoding.base16().lowerCase().encode(hash);
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(jvmName);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Unsupported algorithm: " + jvmName);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.vassa.client;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.hash.Hashing;
+import org.apache.http.Header;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpRequestBase;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// 200 responses to signed GETs that came with an ETag or a Last-Modified, kept with what ResponseReader made of
+// them. The next GET of the same URL carries If-None-Match / If-Modified-Since (signed with the rest, see
+// RequestSigner), and a 304 is answered from the entry: no body on the wire and nothing to parse. Memory holds
+// entries up to maximumBytes, least recently used first out; with a directory, what memory evicts is written
+// there, one file per URL, read back on the next miss and kept across runs.
+public class ResponseCache {
+
+    private static final int FORMAT_VERSION = 1;
+    private static final String ETAG = "ETag";
+    private static final String LAST_MODIFIED = "Last-Modified";
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+    // fields, header strings and map overhead of an entry, next to its key and body
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private final long maximumBytes;
+    private final Path directory;
+    private final Cache<String, Entry> memory;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder diskErrors = new LongAdder();
+
+    public ResponseCache(final long maximumBytes) {
+        this(maximumBytes, null);
+    }
+
+    // directory null keeps entries in memory only
+    public ResponseCache(final long maximumBytes, final Path directory) {
+        if(maximumBytes < 1) {
+            throw new IllegalArgumentException("Response cache size is not valid: " + maximumBytes);
+        }
+        this.maximumBytes = maximumBytes;
+        this.directory = directory;
+        if(directory != null) {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Response cache directory is not valid: " + directory, e);
+            }
+        }
+        this.memory = CacheBuilder.newBuilder()
+                .maximumWeight(maximumBytes)
+                .weigher((String key, Entry entry) -> entry.weight(key))
+                .removalListener(notification -> {
+                    if(notification.getCause() == RemovalCause.SIZE) {
+                        spill(notification.getKey(), notification.getValue());
+                    }
+                })
+                .build();
+    }
+
+    // the validators of the cached response, if any, go on the request; call before signing it
+    Entry prepare(final String key, final HttpRequestBase request) {
+        Entry entry = lookup(key);
+        if(entry == null) {
+            misses.increment();
+            return null;
+        }
+        if(entry.etag != null) {
+            request.setHeader(IF_NONE_MATCH, entry.etag);
+        }
+        if(entry.lastModified != null) {
+            request.setHeader(IF_MODIFIED_SINCE, entry.lastModified);
+        }
+        return entry;
+    }
+
+    // what the caller gets: the cached response on 304, otherwise the response itself, which is stored or
+    // replaces the entry when it is a 200 with validators
+    ApiResponse update(final String key, final Entry cached, final ApiResponse response) {
+        final int status = response.getStatus();
+        if(status == HttpStatus.SC_NOT_MODIFIED && cached != null) {
+            hits.increment();
+            return cached.toResponse(response.getHeaders());
+        }
+        if(status != HttpStatus.SC_OK) {
+            return response;
+        }
+        final String etag = response.getFirstHeader(ETAG);
+        final String lastModified = response.getFirstHeader(LAST_MODIFIED);
+        if(etag == null && lastModified == null) {
+            if(cached != null) {
+                invalidate(key);
+            }
+            return response;
+        }
+        memory.put(key, new Entry(etag, lastModified, response.getStatusLine(), response.isRolePublic(),
+                response.getBody(), response.getBodyBytes()));
+        return response;
+    }
+
+    private Entry lookup(final String key) {
+        Entry entry = memory.getIfPresent(key);
+        if(entry != null || directory == null) {
+            return entry;
+        }
+        entry = readFile(key);
+        if(entry != null) {
+            diskHits.increment();
+            memory.put(key, entry);
+        }
+        return entry;
+    }
+
+    public void invalidate(final String key) {
+        memory.invalidate(key);
+        if(directory != null) {
+            try {
+                Files.deleteIfExists(file(key));
+            } catch (IOException e) {
+                diskErrors.increment();
+            }
+        }
+    }
+
+    private void spill(final String key, final Entry entry) {
+        if(directory == null) {
+            return;
+        }
+        final Path file = file(key);
+        final Path temporary = file.resolveSibling(file.getFileName() + ".tmp" + Thread.currentThread().getId());
+        try {
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temporary))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(key);
+                writeNullable(out, entry.etag);
+                writeNullable(out, entry.lastModified);
+                out.writeUTF(entry.statusLine);
+                out.writeBoolean(entry.rolePublic);
+                out.writeLong(entry.bodyBytes);
+                final byte[] body = entry.body == null ? null : entry.body.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(body == null ? -1 : body.length);
+                if(body != null) {
+                    out.write(body);
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            diskErrors.increment();
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+                // already counted
+            }
+        }
+    }
+
+    private Entry readFile(final String key) {
+        try (InputStream stream = Files.newInputStream(file(key));
+             DataInputStream in = new DataInputStream(stream)) {
+            // another format or a hash collision: not this entry
+            if(in.readInt() != FORMAT_VERSION || !key.equals(in.readUTF())) {
+                return null;
+            }
+            final String etag = readNullable(in);
+            final String lastModified = readNullable(in);
+            final String statusLine = in.readUTF();
+            final boolean rolePublic = in.readBoolean();
+            final long bodyBytes = in.readLong();
+            final int length = in.readInt();
+            String body = null;
+            if(length >= 0) {
+                final byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                body = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return new Entry(etag, lastModified, statusLine, rolePublic, body, bodyBytes);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            diskErrors.increment();
+            return null;
+        }
+    }
+
+    private static void writeNullable(final DataOutputStream out, final String value) throws IOException {
+        out.writeBoolean(value != null);
+        if(value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(final DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private Path file(final String key) {
+        return directory.resolve(Hashing.sha256().hashString(key, StandardCharsets.UTF_8) + ".entry");
+    }
+
+    // with a directory, the entries still in memory are written there so the next run starts with them
+    public void flush() {
+        if(directory == null) {
+            return;
+        }
+        memory.asMap().forEach(this::spill);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long size() {
+        return memory.size();
+    }
+
+    @Override
+    public String toString() {
+        long weight = 0;
+        for (Map.Entry<String, Entry> entry : memory.asMap().entrySet()) {
+            weight += entry.getValue().weight(entry.getKey());
+        }
+        return String.format("Response cache: %d not modified, %d without entry, %d entries (%d of %d bytes)%s",
+                hits.sum(), misses.sum(), memory.size(), weight, maximumBytes, directory == null ? ""
+                        : String.format(", %d read from %s, %d disk errors", diskHits.sum(), directory, diskErrors.sum()));
+    }
+
+    static final class Entry {
+        final String etag;
+        final String lastModified;
+        final String statusLine;
+        final boolean rolePublic;
+        final String body;
+        final long bodyBytes;
+
+        private Entry(final String etag, final String lastModified, final String statusLine, final boolean rolePublic,
+                      final String body, final long bodyBytes) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.statusLine = statusLine;
+            this.rolePublic = rolePublic;
+            this.body = body;
+            this.bodyBytes = bodyBytes;
+        }
+
+        // the headers are the 304 ones, they may update Date, ETag or caching headers
+        private ApiResponse toResponse(final Header[] headers) {
+            return new ApiResponse(HttpStatus.SC_OK, statusLine, headers, rolePublic, body, bodyBytes);
+        }
+
+        private int weight(final String key) {
+            final long chars = key.length() + (body == null ? 0 : body.length())
+                    + (etag == null ? 0 : etag.length()) + (lastModified == null ? 0 : lastModified.length())
+                    + statusLine.length();
+            return (int) Math.min(Integer.MAX_VALUE, ENTRY_OVERHEAD + 2 * chars);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.vassa.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.vassa.metrics.Metrics;
+import org.apache.http.HttpEntity;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// Reads a 200 body once: a streaming parser looks for authentication_key.role and stops as soon as it is
+// resolved, every byte read from the connection (by the parser or by the final drain) goes to the sink.
+final class ResponseReader {
+
+    // the parser must not close the stream, what it leaves unread is still drained into the sink
+    static final JsonFactory JSON = new JsonFactory().disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+    private static final String AUTHENTICATION_KEY = "authentication_key";
+    private static final String ROLE = "role";
+    private static final int BUFFER_SIZE = 8192;
+
+    private ResponseReader() {
+    }
+
+    // contentEncoding is the Content-Encoding the body still has, null when the client already decoded it
+    static Result read(final HttpEntity entity, final String contentEncoding, final ResponseSink sink)
+            throws IOException {
+        if(entity == null) {
+            return new Result(false, sink.finish(), 0);
+        }
+        final long start = Metrics.start();
+        try (TeeInputStream in = new TeeInputStream(ContentEncoding.decode(contentEncoding, entity.getContent()), sink)) {
+            boolean rolePublic = isRolePublic(in);
+            // the rest goes to the sink and the connection can be reused
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (in.read(buffer, 0, buffer.length) >= 0) {
+                // drained through the tee
+            }
+            return new Result(rolePublic, sink.finish(), in.count);
+        } finally {
+            Metrics.RESPONSE_READ.stop(start);
+        }
+    }
+
+    private static boolean isRolePublic(final InputStream in) throws IOException {
+        try (JsonParser parser = JSON.createParser(in)) {
+            if(parser.nextToken() != JsonToken.START_OBJECT) {
+                return false;
+            }
+            if(!moveToField(parser, AUTHENTICATION_KEY) || parser.nextToken() != JsonToken.START_OBJECT) {
+                return false;
+            }
+            if(!moveToField(parser, ROLE) || parser.nextToken() != JsonToken.VALUE_STRING) {
+                return false;
+            }
+            return ApiClient.AUTHENTICATION_KEY_ROLE_PUBLIC.equalsIgnoreCase(parser.getText());
+        } catch (JsonProcessingException e) {
+            // not JSON, so no role
+            return false;
+        }
+    }
+
+    // leaves the parser on the field name, other members of the current object are skipped without building them
+    private static boolean moveToField(final JsonParser parser, final String name) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            if(name.equals(parser.getCurrentName())) {
+                return true;
+            }
+            parser.nextToken();
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    static final class Result {
+        final boolean rolePublic;
+        final String body;
+        final long bytes;
+
+        private Result(final boolean rolePublic, final String body, final long bytes) {
+            this.rolePublic = rolePublic;
+            this.body = body;
+            this.bytes = bytes;
+        }
+    }
+
+    private static final class TeeInputStream extends FilterInputStream {
+        private final ResponseSink sink;
+        private long count;
+
+        private TeeInputStream(final InputStream in, final ResponseSink sink) {
+            super(in);
+            this.sink = sink;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            int n = super.read(b, off, len);
+            if(n > 0) {
+                sink.write(b, off, n);
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            // skipped bytes must reach the sink too
+            byte[] buffer = new byte[(int) Math.min(n, BUFFER_SIZE)];
+            int read = read(buffer, 0, buffer.length);
+            return Math.max(read, 0);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.vassa.client;
+
+import java.io.IOException;
+
+// Receives the body of a 200 response while it streams from the connection. A new sink is created for every
+// response (see ResponseSinks), so implementations do not need to be thread safe.
+public interface ResponseSink {
+
+    void write(byte[] buffer, int offset, int length) throws IOException;
+
+    // called once the body is fully read; the result becomes ApiResponse.getBody(), null when nothing is kept
+    String finish() throws IOException;
+
+    interface Factory {
+        ResponseSink create();
+    }
+}
@@ -0,0 +1,81 @@
+package com.vassa.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public final class ResponseSinks {
+
+    private static final ResponseSink DISCARD = new ResponseSink() {
+        @Override
+        public void write(final byte[] buffer, final int offset, final int length) {
+        }
+
+        @Override
+        public String finish() {
+            return null;
+        }
+    };
+
+    private static final ResponseSink.Factory STRING = () -> new ResponseSink() {
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        @Override
+        public void write(final byte[] buffer, final int offset, final int length) {
+            body.write(buffer, offset, length);
+        }
+
+        @Override
+        public String finish() {
+            return new String(body.toByteArray(), StandardCharsets.UTF_8);
+        }
+    };
+
+    private static final ResponseSink.Factory DISCARD_FACTORY = () -> DISCARD;
+
+    private ResponseSinks() {
+    }
+
+    // keeps the body as a UTF-8 String, the default
+    public static ResponseSink.Factory string() {
+        return STRING;
+    }
+
+    // only ApiResponse.getBodyBytes() is kept, the usual choice under load
+    public static ResponseSink.Factory discard() {
+        return DISCARD_FACTORY;
+    }
+
+    // what a cached response stands for under this factory, see ResponseCache: a 304 can replay a String body
+    // or a size, but cannot refill a file or a custom sink, null then
+    static String cacheScope(final ResponseSink.Factory factory) {
+        return factory == STRING ? "body" : factory == DISCARD_FACTORY ? "size" : null;
+    }
+
+    // every body replaces the content of the file, meant for single requests with large responses
+    public static ResponseSink.Factory file(final Path path) {
+        return () -> new ResponseSink() {
+            private OutputStream out;
+
+            @Override
+            public void write(final byte[] buffer, final int offset, final int length) throws IOException {
+                if(out == null) {
+                    out = Files.newOutputStream(path);
+                }
+                out.write(buffer, offset, length);
+            }
+
+            @Override
+            public String finish() throws IOException {
+                if(out == null) {
+                    out = Files.newOutputStream(path);
+                }
+                out.close();
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,12 @@
+package com.vassa.client;
+
+import java.io.Closeable;
+
+// Receives the outcome of every ApiClient call instead of the console, see ResultWriter. Called concurrently
+// from the calling threads, right after the response is read, so implementations must be cheap and thread safe.
+// Whoever creates the sink closes it, after the clients writing to it.
+public interface ResultSink extends Closeable {
+
+    // status 0 when the call failed without a response, bytes and rolePublic are only known for 200 responses
+    void record(String method, int status, long latencyNanos, long bytes, boolean rolePublic);
+}
@@ -0,0 +1,318 @@
+package com.vassa.client;
+
+import com.vassa.metrics.LatencyHistogram;
+import com.vassa.util.CommandLine;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Writes one record per call to a file from a background thread. A caller claims a slot of a ring buffer, fills
+// it and returns; the writer thread encodes the published slots into a direct buffer and hands it to the
+// FileChannel when it is full or when the ring runs empty, so a high rate run costs one write per 64 KB instead
+// of a console line per call. If the writer falls a whole ring behind, callers wait for it instead of dropping
+// records. The summary is aggregated on the writer thread from the same records.
+//
+// jsonl:  {"ts":1700000000000,"method":"POST","status":200,"latency_us":1234,"bytes":42,"role_public":false}
+// binary: "SATR", int version, int record size, then RECORD_BYTES big endian records of long ts millis,
+//         long latency nanos, long bytes, short status, byte HttpMethod ordinal (-1 for others),
+//         byte flags (1 = role PUBLIC) and 4 bytes of padding
+public class ResultWriter implements ResultSink {
+
+    public enum Format { JSONL, BINARY }
+
+    public static final int RECORD_BYTES = 32;
+    public static final int VERSION = 1;
+    private static final byte[] MAGIC = {'S', 'A', 'T', 'R'};
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int BATCH_BYTES = 64 * 1024;
+    // a JSONL record with "DELETE" and 19 digit numbers fits
+    private static final int MAX_RECORD_BYTES = 192;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    private static final int MAX_STATUS = 600;
+    private static final byte FLAG_ROLE_PUBLIC = 1;
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private static final byte[] TS = ascii("{\"ts\":");
+    private static final byte[] METHOD = ascii(",\"method\":\"");
+    private static final byte[] STATUS = ascii("\",\"status\":");
+    private static final byte[] LATENCY = ascii(",\"latency_us\":");
+    private static final byte[] BYTES = ascii(",\"bytes\":");
+    private static final byte[] ROLE_PUBLIC = ascii(",\"role_public\":true}\n");
+    private static final byte[] ROLE_OTHER = ascii(",\"role_public\":false}\n");
+
+    private final Path path;
+    private final Format format;
+    private final FileChannel channel;
+    private final int mask;
+    // one array per field, recording allocates nothing
+    private final long[] timestamps;
+    private final long[] latencies;
+    private final long[] sizes;
+    private final int[] statuses;
+    private final String[] methods;
+    private final boolean[] roles;
+    // sequence of the record each slot holds, set after its fields so the writer sees them complete
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed;
+    private volatile boolean closed;
+    private final Thread writer;
+    private final long started = System.nanoTime();
+    private long elapsedNanos;
+
+    // writer thread only
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BATCH_BYTES);
+    private final byte[] digits = new byte[20];
+    private final Map<String, byte[]> methodNames = new HashMap<>();
+    private final long[] statusCounts = new long[MAX_STATUS];
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private long count;
+    private long otherStatuses;
+    private long publicRoles;
+    private long totalBytes;
+    private volatile IOException failure;
+
+    public ResultWriter(final Path path, final Format format) throws IOException {
+        this(path, format, DEFAULT_CAPACITY);
+    }
+
+    // capacity is rounded up to a power of two
+    public ResultWriter(final Path path, final Format format, final int capacity) throws IOException {
+        if(capacity < 1 || capacity > 1 << 24) {
+            throw new IllegalArgumentException("Result buffer capacity is not valid: " + capacity);
+        }
+        int slots = 1;
+        while (slots < capacity) {
+            slots <<= 1;
+        }
+        this.path = path;
+        this.format = format;
+        this.mask = slots - 1;
+        this.timestamps = new long[slots];
+        this.latencies = new long[slots];
+        this.sizes = new long[slots];
+        this.statuses = new int[slots];
+        this.methods = new String[slots];
+        this.roles = new boolean[slots];
+        this.published = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            published.set(i, -1);
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.writer = new Thread(this::drain, "result-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // --results=file writes one record per call there, --results-format=jsonl|binary (binary for .bin files)
+    public static ResultWriter fromCommandLine(final CommandLine commandLine) throws IOException {
+        String file = commandLine.option("results", null);
+        if(file == null) {
+            return null;
+        }
+        String name = commandLine.option("results-format", file.endsWith(".bin") ? "binary" : "jsonl");
+        try {
+            return new ResultWriter(Paths.get(file), Format.valueOf(name.toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Results format is not valid: " + name);
+        }
+    }
+
+    @Override
+    public void record(final String method, final int status, final long latencyNanos, final long bytes,
+                       final boolean rolePublic) {
+        if(closed) {
+            throw new IllegalStateException("Result writer is closed: " + path);
+        }
+        final long sequence = claimed.getAndIncrement();
+        while (sequence - consumed > mask) {
+            if(!writer.isAlive()) {
+                throw new RuntimeException("Cannot write results to " + path + ": " + failure);
+            }
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        final int slot = (int) sequence & mask;
+        timestamps[slot] = System.currentTimeMillis();
+        latencies[slot] = latencyNanos;
+        sizes[slot] = bytes;
+        statuses[slot] = status;
+        methods[slot] = method;
+        roles[slot] = rolePublic;
+        published.set(slot, sequence);
+    }
+
+    private void drain() {
+        try {
+            if(format == Format.BINARY) {
+                buffer.put(MAGIC).putInt(VERSION).putInt(RECORD_BYTES);
+            }
+            long next = 0;
+            while (true) {
+                final int slot = (int) next & mask;
+                if(published.get(slot) == next) {
+                    if(buffer.remaining() < MAX_RECORD_BYTES) {
+                        flush();
+                    }
+                    encode(slot);
+                    aggregate(slot);
+                    consumed = ++next;
+                } else if(buffer.position() > 0) {
+                    // the ring ran empty, write what is there instead of waiting for a full batch
+                    flush();
+                } else if(closed && next == claimed.get()) {
+                    return;
+                } else {
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    private void encode(final int slot) {
+        if(format == Format.BINARY) {
+            buffer.putLong(timestamps[slot])
+                    .putLong(latencies[slot])
+                    .putLong(sizes[slot])
+                    .putShort((short) statuses[slot])
+                    .put(methodOrdinal(methods[slot]))
+                    .put(roles[slot] ? FLAG_ROLE_PUBLIC : 0)
+                    .putInt(0);
+            return;
+        }
+        buffer.put(TS);
+        putLong(timestamps[slot]);
+        buffer.put(METHOD).put(methodName(methods[slot])).put(STATUS);
+        putLong(statuses[slot]);
+        buffer.put(LATENCY);
+        putLong(latencies[slot] / 1000);
+        buffer.put(BYTES);
+        putLong(sizes[slot]);
+        buffer.put(roles[slot] ? ROLE_PUBLIC : ROLE_OTHER);
+    }
+
+    private void aggregate(final int slot) {
+        count++;
+        final int status = statuses[slot];
+        if(status >= 0 && status < MAX_STATUS) {
+            statusCounts[status]++;
+        } else {
+            otherStatuses++;
+        }
+        if(roles[slot]) {
+            publicRoles++;
+        }
+        totalBytes += sizes[slot];
+        latency.recordNanos(latencies[slot]);
+    }
+
+    private void putLong(long value) {
+        if(value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int start = digits.length;
+        do {
+            digits[--start] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        buffer.put(digits, start, digits.length - start);
+    }
+
+    private byte[] methodName(final String method) {
+        return methodNames.computeIfAbsent(method, m -> m.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte methodOrdinal(final String method) {
+        for (HttpMethod httpMethod : HttpMethod.values()) {
+            if(httpMethod.name().equals(method)) {
+                return (byte) httpMethod.ordinal();
+            }
+        }
+        return -1;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // waits for every recorded call to be written
+    @Override
+    public void close() throws IOException {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing results to " + path, e);
+        } finally {
+            elapsedNanos = System.nanoTime() - started;
+            channel.close();
+        }
+        if(failure != null) {
+            throw new IOException("Cannot write results to " + path + ": " + failure, failure);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    // after close()
+    public void printSummary(final PrintStream out) {
+        out.println(String.format("Results: %d calls written to %s (%s) in %.2f s (%.1f calls/s)", count, path,
+                format.name().toLowerCase(), elapsedNanos / 1e9, elapsedNanos == 0 ? 0 : count * 1e9 / elapsedNanos));
+        for (int status = 1; status < MAX_STATUS; status++) {
+            if(statusCounts[status] > 0) {
+                out.println(String.format("  status %d: %d", status, statusCounts[status]));
+            }
+        }
+        if(otherStatuses > 0) {
+            out.println(String.format("  other status: %d", otherStatuses));
+        }
+        if(statusCounts[0] > 0) {
+            out.println(String.format("  errors: %d", statusCounts[0]));
+        }
+        if(publicRoles > 0) {
+            out.println(String.format("  role %s: %d", ApiClient.AUTHENTICATION_KEY_ROLE_PUBLIC, publicRoles));
+        }
+        out.println(String.format("  body bytes: %d", totalBytes));
+        final StringBuilder sb = new StringBuilder("Latency ms:");
+        for (double percentile : PERCENTILES) {
+            sb.append(String.format(" p%s=%.3f", percentile == Math.rint(percentile)
+                    ? String.valueOf((long) percentile) : String.valueOf(percentile),
+                    latency.percentileMicros(percentile) / 1000.0));
+        }
+        sb.append(String.format(" max=%.3f mean=%.3f", latency.getMaxMicros() / 1000.0, latency.getMeanMicros() / 1000.0));
+        out.println(sb);
+    }
+
+    private static byte[] ascii(final String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,113 @@
+package com.vassa.client;
+
+import com.vassa.metrics.FlightEvents;
+import com.vassa.metrics.Metrics;
+import com.vassa.security.Keyring;
+import com.vassa.security.RequestSigner;
+import com.vassa.util.PrivateKeyUtil;
+import org.apache.http.client.methods.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// Request building and response classification shared by the blocking and the async client.
+final class SignedRequests {
+
+    private static final String ALL_KEYS = "*";
+
+    private SignedRequests() {
+    }
+
+    static void checkKeyId(String keyId) {
+        if(keyId == null || keyId.trim().equals("")) {
+            throw new IllegalArgumentException("Key ID is not valid: [" + keyId + "]");
+        }
+    }
+
+    static void checkFileExists(String pathFile) {
+        File f = new File(pathFile);
+        if(!f.exists()) {
+            throw new IllegalArgumentException("Not found file in path: " + pathFile);
+        }
+    }
+
+    // a directory is opened as a keyring and watched for rotated keys, a single key file gives null
+    static Keyring openKeyring(String pathFile) throws IOException {
+        if(!Keyring.isKeyring(pathFile)) {
+            return null;
+        }
+        Keyring keyring = new Keyring(Paths.get(pathFile));
+        keyring.watch();
+        return keyring;
+    }
+
+    // with a keyring keyId is one keyId, a comma separated list signed round-robin, or "*" for every key
+    static RequestSigner newSigner(String keyId, String pathFile, Keyring keyring, ClientConfig config)
+            throws IOException, NoSuchAlgorithmException, InvalidKeySpecException {
+        if(keyring == null) {
+            return new RequestSigner(keyId, PrivateKeyUtil.loadPrivateKey(pathFile), config.getAlgorithm(),
+                    config.getSignatureCacheSize());
+        }
+        List<String> keyIds = ALL_KEYS.equals(keyId) ? null : Arrays.asList(keyId.split(","));
+        return new RequestSigner(keyring, keyIds, config.getAlgorithm(), config.getSignatureCacheSize());
+    }
+
+    // target is either an absolute URL or a path resolved against the endpoint
+    static String resolve(final String endpoint, final String target) {
+        if(target == null || target.isEmpty()) {
+            return endpoint;
+        }
+        URI uri = URI.create(target);
+        return uri.isAbsolute() ? target : URI.create(endpoint).resolve(uri).toString();
+    }
+
+    // encoding null sends the payload as it is, otherwise digest and body are the compressed bytes
+    static HttpRequestBase build(final HttpMethod method, final String url, final Payload payload,
+                                 final PayloadDigest digest, final ContentEncoding encoding,
+                                 final Map<String, String> headers, final boolean async) {
+        HttpRequestBase request;
+        switch(method) {
+            case GET:
+                request = new HttpGet(url);
+                break;
+            case POST:
+                request = new HttpPost(url);
+                break;
+            case PUT:
+                request = new HttpPut(url);
+                break;
+            case DELETE:
+                request = new HttpDelete(url);
+                break;
+            default:
+                throw new IllegalArgumentException("Not supported method: " + method);
+        }
+        final boolean withBody = request instanceof HttpEntityEnclosingRequestBase;
+        final Payload sent = withBody && encoding != null ? payload.encode(encoding) : payload;
+        long start = Metrics.start();
+        Object event = FlightEvents.beginDigest();
+        request.setHeader(ApiClient.DIGEST, sent.digest(digest));
+        if(event != null) {
+            FlightEvents.commitDigest(event, digest.getName(), sent.length());
+        }
+        Metrics.PAYLOAD_DIGEST.stop(start);
+        if(withBody) {
+            request.setHeader("Content-Type", "application/json");
+            if(sent != payload) {
+                request.setHeader(ContentEncoding.HEADER, encoding.getName());
+            }
+            ((HttpEntityEnclosingRequestBase) request).setEntity(async ? sent.toAsyncEntity() : sent.toEntity());
+        }
+        if(headers != null) {
+            headers.forEach(request::setHeader);
+        }
+        return request;
+    }
+}
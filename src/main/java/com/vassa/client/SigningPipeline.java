@@ -0,0 +1,122 @@
+package com.vassa.client;
+
+import com.vassa.security.RequestSigner;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Signing and sending in two stages for bulk runs, so the CPU-bound signatures overlap with the requests on the
+// wire: submit() builds and signs on RequestSigner.signingPool(), one thread per core, and `senders` threads
+// send what is signed. At most `ahead` requests are signed and not yet sent, submit() waits beyond that, so
+// signatures are made just before they are needed. One that still waited more than ApiClient.Signed.MAX_AGE_MS,
+// in the queue or for the concurrency limit, is signed again with a new Date right before it goes out.
+public class SigningPipeline implements Closeable {
+
+    private static final long POLL_MS = 100;
+
+    private final ApiClient apiClient;
+    private final BlockingQueue<Pending> handOff = new LinkedBlockingQueue<>();
+    private final Semaphore ahead;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Thread[] senders;
+    private volatile boolean closed;
+
+    public SigningPipeline(final ApiClient apiClient, final int senders, final int ahead) {
+        if(senders < 1) {
+            throw new IllegalArgumentException("Senders is not valid: " + senders);
+        }
+        if(ahead < 1) {
+            throw new IllegalArgumentException("Signed ahead is not valid: " + ahead);
+        }
+        this.apiClient = apiClient;
+        this.ahead = new Semaphore(ahead);
+        this.senders = new Thread[senders];
+        for (int i = 0; i < senders; i++) {
+            this.senders[i] = new Thread(this::send, "pipeline-sender-" + i);
+            this.senders[i].setDaemon(true);
+            this.senders[i].start();
+        }
+    }
+
+    // the future fails with the exception of building, signing or sending the request
+    public CompletableFuture<ApiResponse> submit(final HttpMethod method, final String target, final Payload payload,
+                                                 final Map<String, String> headers) throws InterruptedException {
+        if(closed) {
+            throw new IllegalStateException("The pipeline is closed");
+        }
+        final CompletableFuture<ApiResponse> future = new CompletableFuture<>();
+        ahead.acquire();
+        pending.incrementAndGet();
+        RequestSigner.signingPool().execute(() -> {
+            try {
+                handOff.add(new Pending(apiClient.sign(method, target, payload, headers), future));
+            } catch (RuntimeException e) {
+                ahead.release();
+                done(future, null, e);
+            }
+        });
+        return future;
+    }
+
+    private void send() {
+        try {
+            while (!closed || pending.get() > 0) {
+                final Pending next = handOff.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if(next == null) {
+                    continue;
+                }
+                ahead.release();
+                ApiResponse response = null;
+                RuntimeException failure = null;
+                try {
+                    // the age is checked after the limiter wait, inside executeSigned
+                    response = apiClient.executeSigned(next.signed);
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+                done(next.future, response, failure);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void done(final CompletableFuture<ApiResponse> future, final ApiResponse response,
+                      final RuntimeException failure) {
+        pending.decrementAndGet();
+        if(failure != null) {
+            future.completeExceptionally(failure);
+        } else {
+            future.complete(response);
+        }
+    }
+
+    // waits for every submitted request to be sent
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            for (Thread sender : senders) {
+                sender.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Pending {
+        private final ApiClient.Signed signed;
+        private final CompletableFuture<ApiResponse> future;
+
+        private Pending(final ApiClient.Signed signed, final CompletableFuture<ApiResponse> future) {
+            this.signed = signed;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.vassa.client;
+
+import com.vassa.metrics.Metrics;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+// Pool that reports how long callers wait for a lease and how long new connections take to open,
+// so pool exhaustion shows up apart from server latency. The lease wait also goes to the call's CallTimings.
+class TimedConnectionManager extends PoolingHttpClientConnectionManager {
+
+    @Override
+    public ConnectionRequest requestConnection(final HttpRoute route, final Object state) {
+        final ConnectionRequest request = super.requestConnection(route, state);
+        return new ConnectionRequest() {
+            @Override
+            public HttpClientConnection get(final long timeout, final TimeUnit unit)
+                    throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                final CallTimings timings = CallTimings.current();
+                final long start = timings != null ? System.nanoTime() : Metrics.start();
+                try {
+                    return request.get(timeout, unit);
+                } finally {
+                    if(timings != null) {
+                        timings.poolWaitNanos = System.nanoTime() - start;
+                    }
+                    if(Metrics.isEnabled()) {
+                        Metrics.CONNECTION_LEASE.stop(start);
+                    }
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                return request.cancel();
+            }
+        };
+    }
+
+    @Override
+    public void connect(final HttpClientConnection connection, final HttpRoute route, final int connectTimeout,
+                        final HttpContext context) throws IOException {
+        final long start = Metrics.start();
+        try {
+            super.connect(connection, route, connectTimeout, context);
+        } finally {
+            Metrics.CONNECT.stop(start);
+        }
+    }
+}
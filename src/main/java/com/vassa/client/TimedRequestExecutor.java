@@ -0,0 +1,32 @@
+package com.vassa.client;
+
+import com.vassa.metrics.Metrics;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+import java.io.IOException;
+
+// Times the wait between a fully sent request and its response headers, the part that belongs to the server.
+class TimedRequestExecutor extends HttpRequestExecutor {
+
+    @Override
+    protected HttpResponse doReceiveResponse(final HttpRequest request, final HttpClientConnection connection,
+                                             final HttpContext context) throws HttpException, IOException {
+        final CallTimings timings = CallTimings.current();
+        final long start = timings != null ? System.nanoTime() : Metrics.start();
+        try {
+            return super.doReceiveResponse(request, connection, context);
+        } finally {
+            if(timings != null) {
+                timings.timeToFirstByteNanos = System.nanoTime() - start;
+            }
+            if(Metrics.isEnabled()) {
+                Metrics.TIME_TO_FIRST_BYTE.stop(start);
+            }
+        }
+    }
+}
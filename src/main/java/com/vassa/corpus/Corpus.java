@@ -0,0 +1,206 @@
+package com.vassa.corpus;
+
+import com.vassa.client.HttpMethod;
+import com.vassa.client.Payload;
+import com.vassa.client.PayloadDigest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Request specs written by CorpusBuilder, memory-mapped: `<prefix>.data` holds the records, `<prefix>.idx`
+// the offset of each one, so get(i) is a lookup and a few field reads whatever the size of the corpus. Payloads
+// are never copied, they are slices of the mapping handed to the HTTP entity, and their digest is the one
+// computed at build time when the client uses the same algorithm. Safe to share between threads.
+//
+// .data: "SATC", int version, short + digest name (empty without precomputed digests), then per record:
+//        byte HttpMethod ordinal, short + target (empty for the client endpoint), short header count and
+//        short + name, short + value for each, short + digest, int + payload. Strings are UTF-8, big endian
+//        lengths; no record crosses a SEGMENT_BYTES boundary, the builder pads before it.
+// .idx:  "SATI", int version, long count, then count long offsets into .data
+public class Corpus {
+
+    static final byte[] DATA_MAGIC = {'S', 'A', 'T', 'C'};
+    static final byte[] INDEX_MAGIC = {'S', 'A', 'T', 'I'};
+    static final int VERSION = 1;
+    static final int INDEX_HEADER_BYTES = 16;
+    // a MappedByteBuffer addresses at most 2 GB, the data file is mapped in segments of this size
+    static final int SEGMENT_BITS = 30;
+    static final long SEGMENT_BYTES = 1L << SEGMENT_BITS;
+    private static final long SEGMENT_MASK = SEGMENT_BYTES - 1;
+    private static final HttpMethod[] METHODS = HttpMethod.values();
+
+    private final Path prefix;
+    private final MappedByteBuffer[] segments;
+    private final LongBuffer offsets;
+    private final int count;
+    private final PayloadDigest digest;
+    private final long dataBytes;
+
+    private Corpus(final Path prefix, final MappedByteBuffer[] segments, final LongBuffer offsets, final int count,
+                   final PayloadDigest digest, final long dataBytes) {
+        this.prefix = prefix;
+        this.segments = segments;
+        this.offsets = offsets;
+        this.count = count;
+        this.digest = digest;
+        this.dataBytes = dataBytes;
+    }
+
+    static Path dataFile(final Path prefix) {
+        return prefix.resolveSibling(prefix.getFileName() + ".data");
+    }
+
+    static Path indexFile(final Path prefix) {
+        return prefix.resolveSibling(prefix.getFileName() + ".idx");
+    }
+
+    public static Corpus open(final Path prefix) throws IOException {
+        final ByteBuffer index;
+        try (FileChannel channel = FileChannel.open(indexFile(prefix), StandardOpenOption.READ)) {
+            index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        checkMagic(index, INDEX_MAGIC, indexFile(prefix));
+        final long count = index.getLong();
+        if(count < 0 || INDEX_HEADER_BYTES + count * 8 > index.capacity()) {
+            throw new IOException("Corpus index is truncated: " + indexFile(prefix));
+        }
+        index.position(INDEX_HEADER_BYTES);
+        final LongBuffer offsets = index.slice().asLongBuffer();
+
+        final MappedByteBuffer[] segments;
+        final long size;
+        try (FileChannel channel = FileChannel.open(dataFile(prefix), StandardOpenOption.READ)) {
+            size = channel.size();
+            segments = new MappedByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_BITS)];
+            for (int i = 0; i < segments.length; i++) {
+                final long start = (long) i << SEGMENT_BITS;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_BYTES, size - start));
+            }
+        }
+        if(segments.length == 0) {
+            throw new IOException("Corpus data is empty: " + dataFile(prefix));
+        }
+        final ByteBuffer header = segments[0].duplicate();
+        checkMagic(header, DATA_MAGIC, dataFile(prefix));
+        final String digestName = string(header, header.getShort() & 0xFFFF);
+        return new Corpus(prefix, segments, offsets, (int) count,
+                digestName.isEmpty() ? null : PayloadDigest.get(digestName), size);
+    }
+
+    private static void checkMagic(final ByteBuffer buffer, final byte[] magic, final Path file) throws IOException {
+        final byte[] found = new byte[magic.length];
+        if(buffer.remaining() < magic.length + 4) {
+            throw new IOException("Not a corpus file: " + file);
+        }
+        buffer.get(found);
+        if(!Arrays.equals(found, magic)) {
+            throw new IOException("Not a corpus file: " + file);
+        }
+        final int version = buffer.getInt();
+        if(version != VERSION) {
+            throw new IOException("Corpus version " + version + " is not supported: " + file);
+        }
+    }
+
+    // touches every page of the data file, so the first pass of a run does not wait on the disk
+    public void preload() {
+        for (MappedByteBuffer segment : segments) {
+            segment.load();
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // the algorithm of the precomputed payload digests, null when the corpus was built without them
+    public PayloadDigest getDigest() {
+        return digest;
+    }
+
+    public long getDataBytes() {
+        return dataBytes;
+    }
+
+    public Path getPrefix() {
+        return prefix;
+    }
+
+    public Request get(final long index) {
+        if(index < 0 || index >= count) {
+            throw new IllegalArgumentException("Corpus index is not valid: " + index + " of " + count);
+        }
+        final long offset = offsets.get((int) index);
+        final ByteBuffer in = segments[(int) (offset >>> SEGMENT_BITS)].duplicate();
+        in.position((int) (offset & SEGMENT_MASK));
+        final HttpMethod method = METHODS[in.get()];
+        final String target = string(in, in.getShort() & 0xFFFF);
+        final int headerCount = in.getShort() & 0xFFFF;
+        Map<String, String> headers = Collections.emptyMap();
+        if(headerCount > 0) {
+            headers = new LinkedHashMap<>(headerCount * 2);
+            for (int i = 0; i < headerCount; i++) {
+                final String name = string(in, in.getShort() & 0xFFFF);
+                headers.put(name, string(in, in.getShort() & 0xFFFF));
+            }
+        }
+        final int digestLength = in.getShort() & 0xFFFF;
+        final String payloadDigest = digestLength == 0 ? null : string(in, digestLength);
+        final int payloadLength = in.getInt();
+        final ByteBuffer payload = in.slice();
+        payload.limit(payloadLength);
+        return new Request(method, target.isEmpty() ? null : target, headers,
+                Payload.of(payload, digest, payloadDigest));
+    }
+
+    private static String string(final ByteBuffer in, final int length) {
+        if(length == 0) {
+            return "";
+        }
+        final byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static final class Request {
+        private final HttpMethod method;
+        private final String target;
+        private final Map<String, String> headers;
+        private final Payload payload;
+
+        private Request(final HttpMethod method, final String target, final Map<String, String> headers,
+                        final Payload payload) {
+            this.method = method;
+            this.target = target;
+            this.headers = headers;
+            this.payload = payload;
+        }
+
+        public HttpMethod getMethod() {
+            return method;
+        }
+
+        // null for the client endpoint, otherwise absolute or relative to it, see ApiClient.resolve
+        public String getTarget() {
+            return target;
+        }
+
+        public Map<String, String> getHeaders() {
+            return headers;
+        }
+
+        public Payload getPayload() {
+            return payload;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.vassa.corpus;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vassa.batch.BatchRecord;
+import com.vassa.client.PayloadDigest;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+// Turns a batch JSONL file (see BatchRecord) into the files of a Corpus. JSON is parsed once here, payload
+// files are inlined, and with a digest algorithm every payload digest is computed now instead of per request.
+public class CorpusBuilder {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int MAX_STRING = 0xFFFF;
+
+    private final PayloadDigest digest;
+    private long records;
+    private long dataBytes;
+
+    // digest null leaves the digests to the client
+    public CorpusBuilder(final PayloadDigest digest) {
+        this.digest = digest;
+    }
+
+    public void build(final BufferedReader in, final Path prefix) throws IOException {
+        final Path indexFile = Corpus.indexFile(prefix);
+        final ByteArrayOutputStream record = new ByteArrayOutputStream();
+        final DataOutputStream recordOut = new DataOutputStream(record);
+        try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(
+                     Files.newOutputStream(Corpus.dataFile(prefix)), 1 << 16));
+             DataOutputStream index = new DataOutputStream(new BufferedOutputStream(
+                     Files.newOutputStream(indexFile), 1 << 16))) {
+            data.write(Corpus.DATA_MAGIC);
+            data.writeInt(Corpus.VERSION);
+            writeString(data, digest == null ? "" : digest.getName());
+            dataBytes = data.size();
+            index.write(Corpus.INDEX_MAGIC);
+            index.writeInt(Corpus.VERSION);
+            // the count is written once known
+            index.writeLong(0);
+
+            long lines = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                lines++;
+                if(line.trim().isEmpty()) {
+                    continue;
+                }
+                record.reset();
+                try {
+                    encode(BatchRecord.parse(MAPPER, line), recordOut);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Line " + lines + ": " + e.getMessage(), e);
+                }
+                if(record.size() > Corpus.SEGMENT_BYTES) {
+                    throw new IllegalArgumentException("Line " + lines + ": request is larger than "
+                            + Corpus.SEGMENT_BYTES + " bytes");
+                }
+                final long used = dataBytes & (Corpus.SEGMENT_BYTES - 1);
+                if(used + record.size() > Corpus.SEGMENT_BYTES) {
+                    pad(data, Corpus.SEGMENT_BYTES - used);
+                }
+                index.writeLong(dataBytes);
+                record.writeTo(data);
+                dataBytes += record.size();
+                records++;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.WRITE)) {
+            final ByteBuffer count = ByteBuffer.allocate(8).putLong(0, records);
+            channel.write(count, Corpus.INDEX_HEADER_BYTES - 8);
+        }
+    }
+
+    private void encode(final BatchRecord request, final DataOutputStream out) throws IOException {
+        out.writeByte(request.getMethod().ordinal());
+        writeString(out, request.getEndpoint() == null ? "" : request.getEndpoint());
+        final Map<String, String> headers = request.getHeaders();
+        if(headers.size() > MAX_STRING) {
+            throw new IllegalArgumentException("Too many headers: " + headers.size());
+        }
+        out.writeShort(headers.size());
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            writeString(out, header.getKey());
+            writeString(out, header.getValue());
+        }
+        writeString(out, digest == null ? "" : request.getPayload().digest(digest));
+        final long length = request.getPayload().length();
+        if(length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Payload is larger than 2 GB: " + length + " bytes");
+        }
+        out.writeInt((int) length);
+        request.getPayload().copyTo(out);
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if(bytes.length > MAX_STRING) {
+            throw new IllegalArgumentException("Value is longer than " + MAX_STRING + " bytes: "
+                    + value.substring(0, 32) + "...");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private void pad(final OutputStream out, final long bytes) throws IOException {
+        final byte[] zeros = new byte[8192];
+        for (long left = bytes; left > 0; left -= zeros.length) {
+            out.write(zeros, 0, (int) Math.min(zeros.length, left));
+        }
+        dataBytes += bytes;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public long getDataBytes() {
+        return dataBytes;
+    }
+}
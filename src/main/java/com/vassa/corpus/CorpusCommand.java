@@ -0,0 +1,33 @@
+package com.vassa.corpus;
+
+import com.vassa.client.PayloadDigest;
+import com.vassa.util.CommandLine;
+
+import java.io.BufferedReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+// corpus <requests.jsonl> <prefix> [--digest=sha256] [--no-digest]
+// writes <prefix>.data and <prefix>.idx for replay
+public class CorpusCommand {
+
+    public static void run(final String[] args, final PrintStream out) throws Exception {
+        CommandLine commandLine = new CommandLine(args, 1);
+        String file = commandLine.positional(0);
+        String prefix = commandLine.positional(1);
+        PayloadDigest digest = commandLine.has("no-digest") ? null
+                : PayloadDigest.get(commandLine.option("digest", PayloadDigest.SHA256.getName()));
+
+        long start = System.nanoTime();
+        CorpusBuilder builder = new CorpusBuilder(digest);
+        try (BufferedReader in = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            builder.build(in, Paths.get(prefix));
+        }
+        out.println(String.format("Corpus %s: %d requests, %d bytes of data, %s in %.2f s", prefix,
+                builder.getRecords(), builder.getDataBytes(),
+                digest == null ? "no precomputed digest" : digest.getName() + " digests precomputed",
+                (System.nanoTime() - start) / 1e9));
+    }
+}
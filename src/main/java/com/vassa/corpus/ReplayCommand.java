@@ -0,0 +1,71 @@
+package com.vassa.corpus;
+
+import com.vassa.bench.BenchOptions;
+import com.vassa.bench.BenchResult;
+import com.vassa.bench.LoadGenerator;
+import com.vassa.client.ApiClient;
+import com.vassa.client.ClientConfig;
+import com.vassa.client.ResponseSinks;
+import com.vassa.client.ResultWriter;
+import com.vassa.util.CommandLine;
+
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// replay <endpoint> <keyId> <keyPath> <corpus prefix> [--threads=N] [--duration=S] [--requests=N] [--warmup=S]
+//        [--rate=R] [--random] [--preload] [--results=file]
+// Sends the requests of a corpus in order (wrapping around) or picked at random, with the bench load models.
+public class ReplayCommand {
+
+    public static void run(final String[] args, final PrintStream out) throws Exception {
+        CommandLine commandLine = new CommandLine(args, 1);
+        String endpoint = commandLine.positional(0);
+        String keyId = commandLine.positional(1);
+        String keyPath = commandLine.positional(2);
+        Corpus corpus = Corpus.open(Paths.get(commandLine.positional(3)));
+        if(corpus.size() == 0) {
+            throw new IllegalArgumentException("Corpus is empty: " + corpus.getPrefix());
+        }
+        boolean random = commandLine.has("random");
+        if(commandLine.has("preload")) {
+            corpus.preload();
+        }
+        BenchOptions options = BenchOptions.from(commandLine);
+        ResultWriter results = ResultWriter.fromCommandLine(commandLine);
+
+        ClientConfig config = ClientConfig.from(commandLine)
+                .setMaxPerRoute(options.getThreads())
+                .setMaxTotal(options.getThreads())
+                .setWarmupConnections(options.getThreads())
+                .setResponseSink(ResponseSinks.discard())
+                .setResultSink(results);
+        if(corpus.getDigest() != null && corpus.getDigest() != config.getPayloadDigest()) {
+            out.println(String.format("Corpus digests are %s, the client sends %s: computed per request",
+                    corpus.getDigest().getName(), config.getPayloadDigest().getName()));
+        }
+        try (ApiClient apiClient = new ApiClient(endpoint, keyId, keyPath, config)) {
+            out.println(String.format("Replay %d requests of %s (%s) against %s with %d threads, %s", corpus.size(),
+                    corpus.getPrefix(), random ? "random" : "in order", endpoint, options.getThreads(),
+                    options.isOpenModel() ? String.format("open model at %.1f req/s", options.getRate()) : "closed loop"));
+            AtomicLong next = new AtomicLong();
+            LoadGenerator generator = new LoadGenerator(options, () -> {
+                Corpus.Request request = corpus.get(random ? ThreadLocalRandom.current().nextInt(corpus.size())
+                        : next.getAndIncrement() % corpus.size());
+                return apiClient.execute(request.getMethod(), request.getTarget(), request.getPayload(),
+                        request.getHeaders()).getStatus();
+            });
+            BenchResult result = generator.run();
+            result.print(out, options.isOpenModel());
+            if(apiClient.getLimiter() != null) {
+                out.println(apiClient.getLimiter());
+            }
+        } finally {
+            if(results != null) {
+                results.close();
+                results.printSummary(out);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.vassa.daemon;
+
+import com.vassa.util.CommandLine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// client <method> <endpoint> <keyId> [payload] [--sign-only] [--port=7788] [--token=secret | --token-file=path]
+//        [--algorithm=NAME] [--digest=NAME]
+// Thin front end of the daemon: it only writes one JSON line and prints the answer, so it does not load
+// HttpClient, Jackson or the keys, and the request goes out on connections the daemon keeps open. The key is
+// the one the daemon was started with; the token is read from the daemon's token file unless --token is given.
+public class DaemonClient {
+
+    public static void run(final String[] args, final PrintStream out) throws IOException {
+        CommandLine commandLine = new CommandLine(args, 1);
+        StringBuilder request = new StringBuilder(256).append('{');
+        field(request, "op", commandLine.has("sign-only") ? "sign" : "send");
+        field(request, "method", commandLine.positional(0).toUpperCase());
+        field(request, "endpoint", commandLine.positional(1));
+        field(request, "key_id", commandLine.positional(2));
+        field(request, "token", token(commandLine));
+        String payload = commandLine.positional(3, "");
+        if(payload.startsWith("@")) {
+            // the daemon may run in another working directory
+            field(request, "payload_file", Paths.get(payload.substring(1)).toAbsolutePath().toString());
+        } else if(!payload.isEmpty()) {
+            field(request, "payload", payload);
+        }
+        for (String option : new String[]{"algorithm", "digest"}) {
+            if(commandLine.has(option)) {
+                field(request, option, commandLine.option(option, null));
+            }
+        }
+        request.append('}').append('\n');
+
+        int port = commandLine.intOption("port", DaemonCommand.DEFAULT_PORT);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            OutputStream os = socket.getOutputStream();
+            os.write(request.toString().getBytes(StandardCharsets.UTF_8));
+            os.flush();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            String response = in.readLine();
+            if(response == null) {
+                throw new IOException("Daemon closed the connection without answering");
+            }
+            out.println(response);
+        }
+    }
+
+    private static String token(final CommandLine commandLine) throws IOException {
+        String token = commandLine.option("token", null);
+        if(token != null) {
+            return token;
+        }
+        Path tokenFile = DaemonCommand.tokenFile(commandLine);
+        if(!Files.isReadable(tokenFile)) {
+            throw new IOException("No --token and cannot read the daemon token file " + tokenFile);
+        }
+        return new String(Files.readAllBytes(tokenFile), StandardCharsets.UTF_8).trim();
+    }
+
+    private static void field(final StringBuilder json, final String name, final String value) {
+        if(json.length() > 1) {
+            json.append(',');
+        }
+        quote(json, name);
+        json.append(':');
+        quote(json, value);
+    }
+
+    private static void quote(final StringBuilder json, final String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if(c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,63 @@
+package com.vassa.daemon;
+
+import com.vassa.util.CommandLine;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+// daemon <keyPath> [--port=7788] [--token=secret] [--token-file=path]
+//        [client options such as --digest, --algorithm, --signature-cache]
+// Only the key file or keyring directory given here is ever used. Without --token a random one is written to
+// --token-file (~/.satiscript-daemon.token by default), readable by the owner only, where client finds it.
+public class DaemonCommand {
+
+    public static final int DEFAULT_PORT = 7788;
+    public static final String TOKEN_FILE = ".satiscript-daemon.token";
+    private static final int TOKEN_BYTES = 32;
+
+    public static void run(final String[] args, final PrintStream out) throws Exception {
+        CommandLine commandLine = new CommandLine(args, 1);
+        String keyPath = commandLine.positional(0);
+        int port = commandLine.intOption("port", DEFAULT_PORT);
+        String token = commandLine.option("token", null);
+        if(token == null) {
+            Path tokenFile = tokenFile(commandLine);
+            token = writeToken(tokenFile);
+            out.println("Daemon token written to " + tokenFile);
+        }
+        try (DaemonServer server = new DaemonServer(port, token, keyPath, commandLine)) {
+            server.serve(out);
+        }
+    }
+
+    static Path tokenFile(final CommandLine commandLine) {
+        String tokenFile = commandLine.option("token-file", null);
+        return tokenFile != null ? Paths.get(tokenFile) : Paths.get(System.getProperty("user.home"), TOKEN_FILE);
+    }
+
+    // a new token in a file created 0600, so no other user can read it between creation and write
+    private static String writeToken(final Path file) throws IOException {
+        byte[] random = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(random);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(random);
+        Files.deleteIfExists(file);
+        if(file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(file);
+            file.toFile().setReadable(false, false);
+            file.toFile().setReadable(true, true);
+            file.toFile().setWritable(false, false);
+            file.toFile().setWritable(true, true);
+        }
+        Files.write(file, token.getBytes(StandardCharsets.UTF_8));
+        return token;
+    }
+}
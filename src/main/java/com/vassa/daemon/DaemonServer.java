@@ -0,0 +1,263 @@
+package com.vassa.daemon;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.vassa.batch.BatchRecord;
+import com.vassa.client.ApiClient;
+import com.vassa.client.ApiResponse;
+import com.vassa.client.ClientConfig;
+import com.vassa.client.HeaderSigner;
+import com.vassa.client.PayloadDigest;
+import com.vassa.domain.Algorithm;
+import com.vassa.util.CommandLine;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Keeps signers and pooled ApiClients warm between invocations. The protocol is one JSON object per line
+// on a loopback socket, answered by one JSON line:
+//   {"op": "sign", "token": "...", "method": "POST", "endpoint": "https://host/path", "key_id": "...", "payload": ...}
+//   {"op": "send", ... same fields, "target": "/relative/path" optional ...}
+//   {"op": "ping"} and {"op": "shutdown"}
+// "headers", "payload_file", "algorithm" and "digest" work as in batch mode and on the command line. Every
+// request needs the token, and signs with the key path the daemon was started with: a "key_path" is refused,
+// otherwise any local process could have the daemon load and use any key its user can read.
+public class DaemonServer implements Closeable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final CommandLine options;
+    private final byte[] token;
+    private final String keyPath;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final Map<String, HeaderSigner> signers = new ConcurrentHashMap<>();
+    private final Map<String, ApiClient> clients = new ConcurrentHashMap<>();
+
+    // options are the daemon command line, every session gets ClientConfig.from(options)
+    public DaemonServer(final int port, final String token, final String keyPath, final CommandLine options)
+            throws IOException {
+        if(token == null || token.isEmpty()) {
+            throw new IllegalArgumentException("The daemon needs a token");
+        }
+        if(!Files.exists(Paths.get(keyPath))) {
+            throw new IllegalArgumentException("Not found file in path: " + keyPath);
+        }
+        this.options = options;
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+        this.keyPath = keyPath;
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        AtomicInteger counter = new AtomicInteger();
+        this.connections = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "daemon-connection-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    // blocks until a shutdown request or close()
+    public void serve(final PrintStream log) {
+        log.println(String.format("Daemon listening on %s:%d", serverSocket.getInetAddress().getHostAddress(), getPort()));
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.execute(() -> handle(socket));
+            } catch (SocketException e) {
+                // closed by shutdown
+            } catch (IOException e) {
+                log.println("Cannot accept connection: " + e);
+            }
+        }
+    }
+
+    private void handle(final Socket socket) {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if(line.trim().isEmpty()) {
+                    continue;
+                }
+                out.write(process(line));
+                out.write('\n');
+                out.flush();
+            }
+        } catch (IOException e) {
+            // client went away
+        }
+    }
+
+    String process(final String line) throws IOException {
+        ObjectNode result = MAPPER.createObjectNode();
+        long start = System.nanoTime();
+        result.put("ok", true);
+        try {
+            JsonNode request = MAPPER.readTree(line);
+            checkToken(request);
+            String op = text(request, "op", "send");
+            switch (op) {
+                case "ping":
+                    break;
+                case "sign":
+                    sign(request, result);
+                    break;
+                case "send":
+                    send(request, result);
+                    break;
+                case "shutdown":
+                    close();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown op: " + op);
+            }
+        } catch (IOException | RuntimeException e) {
+            result.removeAll();
+            result.put("ok", false);
+            result.put("error", String.valueOf(e.getMessage()));
+        }
+        result.put("latency_ms", (System.nanoTime() - start) / 1e6);
+        return MAPPER.writeValueAsString(result);
+    }
+
+    private void sign(final JsonNode request, final ObjectNode result) throws IOException {
+        BatchRecord record = BatchRecord.parse(MAPPER, request);
+        HeaderSigner signer = signer(request);
+        ObjectNode headers = result.putObject("headers");
+        signer.sign(record.getMethod(), required(record.getEndpoint(), "endpoint"), record.getPayload(),
+                record.getHeaders()).forEach(headers::put);
+    }
+
+    private void send(final JsonNode request, final ObjectNode result) throws IOException {
+        BatchRecord record = BatchRecord.parse(MAPPER, request);
+        ApiClient client = client(required(record.getEndpoint(), "endpoint"), request);
+        ApiResponse response = client.execute(record.getMethod(), text(request, "target", null),
+                record.getPayload(), record.getHeaders());
+        result.put("status", response.getStatus());
+        result.put("role_public", response.isRolePublic());
+        result.put("body", response.getBody());
+    }
+
+    private HeaderSigner signer(final JsonNode request) {
+        String keyId = keyId(request);
+        return signers.computeIfAbsent(sessionKey(keyId, request), k -> {
+            try {
+                return new HeaderSigner(keyId, keyPath, config(request));
+            } catch (IOException | GeneralSecurityException e) {
+                throw new IllegalArgumentException("Cannot load key " + keyPath + ": " + e, e);
+            }
+        });
+    }
+
+    // one pooled client per endpoint and key, created (and checked) by the first request that needs it. The
+    // endpoint check is a network round trip, so the client is built outside the map: requests for other
+    // sessions are not held up, and of two built at once the second is closed
+    private ApiClient client(final String endpoint, final JsonNode request) throws IOException {
+        String keyId = keyId(request);
+        String session = endpoint + '\n' + sessionKey(keyId, request);
+        ApiClient client = clients.get(session);
+        if(client != null) {
+            return client;
+        }
+        ApiClient created;
+        try {
+            created = new ApiClient(endpoint, keyId, keyPath, config(request));
+        } catch (IOException | GeneralSecurityException e) {
+            throw new IllegalArgumentException("Cannot create client for " + endpoint + ": " + e, e);
+        }
+        client = clients.putIfAbsent(session, created);
+        if(client != null) {
+            created.close();
+            return client;
+        }
+        return created;
+    }
+
+    private static String keyId(final JsonNode request) {
+        if(request.has("key_path")) {
+            throw new IllegalArgumentException(
+                    "key_path is not accepted, the daemon signs with the key it was started with");
+        }
+        return required(text(request, "key_id", null), "key_id");
+    }
+
+    private ClientConfig config(final JsonNode request) {
+        ClientConfig config = ClientConfig.from(options);
+        String algorithm = text(request, "algorithm", null);
+        if(algorithm != null) {
+            Algorithm value = Algorithm.get(algorithm);
+            if(value == null) {
+                throw new IllegalArgumentException("Signature algorithm is not valid: " + algorithm);
+            }
+            config.setAlgorithm(value);
+        }
+        String digest = text(request, "digest", null);
+        if(digest != null) {
+            config.setPayloadDigest(PayloadDigest.get(digest));
+        }
+        return config;
+    }
+
+    private static String sessionKey(final String keyId, final JsonNode request) {
+        return keyId + '\n' + text(request, "algorithm", "") + '\n' + text(request, "digest", "");
+    }
+
+    private void checkToken(final JsonNode request) {
+        String given = text(request, "token", "");
+        if(!MessageDigest.isEqual(token, given.getBytes(StandardCharsets.UTF_8))) {
+            throw new IllegalArgumentException("Invalid token");
+        }
+    }
+
+    private static String text(final JsonNode node, final String field, final String defaultValue) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? defaultValue : value.asText();
+    }
+
+    private static String required(final String value, final String field) {
+        if(value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing " + field);
+        }
+        return value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdown();
+        for (ApiClient client : clients.values()) {
+            client.close();
+        }
+        for (HeaderSigner signer : signers.values()) {
+            signer.close();
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.vassa.distributed;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.vassa.bench.BenchOptions;
+import com.vassa.bench.BenchResult;
+import com.vassa.client.HttpMethod;
+import com.vassa.client.Payload;
+import com.vassa.util.CommandLine;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// coordinate <method> <endpoint> <keyId> [payload] --workers=host:port,host:port [--mix=requests.jsonl]
+//            [--threads=N] [--duration=S] [--requests=N] [--warmup=S] [--rate=R] [--report=S] [--token=secret]
+// Splits a bench run across worker processes (see WorkerCommand): every worker gets the whole duration and
+// --threads threads of its own, the rate and the request count are divided between them. Every worker signs
+// with the key it was started with, and payload files are read by the workers on their own hosts. --mix sends
+// the batch records of a JSONL file, each with an optional "weight", instead of the single request. The other
+// options (--digest, --algorithm, --http2, ...) are passed on to every worker's client.
+public class CoordinatorCommand {
+
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    // what the coordinator keeps for itself, everything else configures the workers' clients
+    private static final Set<String> OWN_OPTIONS = new HashSet<>(Arrays.asList(
+            "workers", "mix", "threads", "duration", "requests", "warmup", "rate", "report", "token",
+            "metrics", "metrics-port", "metrics-bind", "jfr"));
+
+    public static void run(final String[] args, final PrintStream out) throws Exception {
+        CommandLine commandLine = new CommandLine(args, 1);
+        HttpMethod method = HttpMethod.valueOf(commandLine.positional(0).toUpperCase());
+        String endpoint = commandLine.positional(1);
+        String keyId = commandLine.positional(2);
+        String payload = commandLine.positional(3, "");
+        BenchOptions options = BenchOptions.from(commandLine);
+        String workersOption = commandLine.option("workers", null);
+        if(workersOption == null || workersOption.trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing --workers=host:port,...");
+        }
+        List<String> addresses = Arrays.asList(workersOption.split(","));
+        long reportMs = TimeUnit.SECONDS.toMillis(commandLine.longOption("report", 5));
+        ArrayNode mix = mix(commandLine, method, payload);
+        ArrayNode clientArgs = WorkerCommand.MAPPER.createArrayNode();
+        for (int i = 1; i < args.length; i++) {
+            if(args[i].startsWith("--") && !OWN_OPTIONS.contains(optionName(args[i]))) {
+                clientArgs.add(args[i]);
+            }
+        }
+
+        if(options.getDurationNanos() <= 0 && options.getRequests() < addresses.size()) {
+            throw new IllegalArgumentException("Fewer requests than workers: " + options.getRequests());
+        }
+
+        List<Connection> workers = new ArrayList<>();
+        try {
+            for (int i = 0; i < addresses.size(); i++) {
+                ObjectNode prepare = WorkerCommand.MAPPER.createObjectNode();
+                prepare.put("op", "prepare");
+                prepare.put("token", commandLine.option("token", null));
+                prepare.put("endpoint", endpoint);
+                prepare.put("key_id", keyId);
+                prepare.set("args", clientArgs);
+                prepare.put("threads", options.getThreads());
+                prepare.put("duration_ms", TimeUnit.NANOSECONDS.toMillis(options.getDurationNanos()));
+                prepare.put("requests", share(options.getRequests(), addresses.size(), i));
+                prepare.put("warmup_ms", TimeUnit.NANOSECONDS.toMillis(options.getWarmupNanos()));
+                prepare.put("rate", options.getRate() / addresses.size());
+                prepare.put("report_ms", reportMs);
+                prepare.set("mix", mix);
+                Connection worker = new Connection(addresses.get(i).trim());
+                workers.add(worker);
+                worker.send(prepare);
+            }
+            // every worker has its client and connections ready before any of them starts
+            for (Connection worker : workers) {
+                worker.expect("ready");
+            }
+            out.println(String.format("Coordinating %s %s on %d workers with %d threads each, %s", method, endpoint,
+                    workers.size(), options.getThreads(), options.isOpenModel()
+                            ? String.format("open model at %.1f req/s in total", options.getRate()) : "closed loop"));
+            ObjectNode start = WorkerCommand.MAPPER.createObjectNode();
+            start.put("op", "start");
+            for (Connection worker : workers) {
+                worker.send(start);
+            }
+            for (Connection worker : workers) {
+                worker.startReading();
+            }
+            long previousCount = 0;
+            long previousTime = System.nanoTime();
+            while (!allDone(workers)) {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(reportMs);
+                for (Connection worker : workers) {
+                    long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if(left > 0) {
+                        worker.awaitDone(left);
+                    }
+                }
+                BenchResult progress = merge(workers);
+                long now = System.nanoTime();
+                out.println(String.format("  %d requests, %.1f req/s, p99=%.3f ms, %d workers running",
+                        progress.getCount(), (progress.getCount() - previousCount) * 1e9 / (now - previousTime),
+                        progress.getResponseTime().percentileMicros(99) / 1000.0, running(workers)));
+                previousCount = progress.getCount();
+                previousTime = now;
+            }
+            for (Connection worker : workers) {
+                if(worker.failure != null) {
+                    throw new IOException("Worker " + worker.address + " failed: " + worker.failure);
+                }
+                BenchResult result = worker.latest;
+                out.println(String.format("Worker %s: %d requests in %.2f s (%.1f req/s)", worker.address,
+                        result.getCount(), result.getElapsedNanos() / 1e9, result.getThroughput()));
+            }
+            merge(workers).print(out, options.isOpenModel());
+        } finally {
+            for (Connection worker : workers) {
+                worker.close();
+            }
+        }
+    }
+
+    // the single request of the command line, unless --mix gives the batch records to choose from
+    private static ArrayNode mix(final CommandLine commandLine, final HttpMethod method, final String payload)
+            throws IOException {
+        ArrayNode mix = WorkerCommand.MAPPER.createArrayNode();
+        String file = commandLine.option("mix", null);
+        if(file == null) {
+            ObjectNode record = mix.addObject();
+            record.put("method", method.name());
+            if(payload.startsWith(Payload.FILE_PREFIX)) {
+                record.put("payload_file", payload.substring(Payload.FILE_PREFIX.length()));
+            } else {
+                record.put("payload", payload);
+            }
+            return mix;
+        }
+        for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+            if(!line.trim().isEmpty()) {
+                mix.add(WorkerCommand.MAPPER.readTree(line));
+            }
+        }
+        return mix;
+    }
+
+    private static long share(final long total, final int parts, final int index) {
+        return total / parts + (index < total % parts ? 1 : 0);
+    }
+
+    private static String optionName(final String arg) {
+        int eq = arg.indexOf('=');
+        return eq < 0 ? arg.substring(2) : arg.substring(2, eq);
+    }
+
+    private static BenchResult merge(final List<Connection> workers) {
+        BenchResult total = new BenchResult();
+        for (Connection worker : workers) {
+            BenchResult latest = worker.latest;
+            if(latest != null) {
+                total.merge(latest);
+            }
+        }
+        return total;
+    }
+
+    private static boolean allDone(final List<Connection> workers) {
+        return running(workers) == 0;
+    }
+
+    private static int running(final List<Connection> workers) {
+        int running = 0;
+        for (Connection worker : workers) {
+            if(!worker.done) {
+                running++;
+            }
+        }
+        return running;
+    }
+
+    private static final class Connection {
+        private final String address;
+        private final Socket socket;
+        private final BufferedReader in;
+        private final Writer out;
+        private volatile BenchResult latest;
+        private volatile boolean done;
+        private volatile String failure;
+        private Thread reader;
+
+        private Connection(final String address) throws IOException {
+            int colon = address.lastIndexOf(':');
+            if(colon < 0) {
+                throw new IllegalArgumentException("Worker address is not valid, expected host:port: " + address);
+            }
+            this.address = address;
+            this.socket = new Socket();
+            this.socket.setTcpNoDelay(true);
+            this.socket.connect(new InetSocketAddress(address.substring(0, colon),
+                    Integer.parseInt(address.substring(colon + 1))), CONNECT_TIMEOUT_MS);
+            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        private void send(final JsonNode message) throws IOException {
+            WorkerCommand.send(out, message);
+        }
+
+        private void expect(final String type) throws IOException {
+            String line = in.readLine();
+            if(line == null) {
+                throw new IOException("Worker " + address + " closed the connection");
+            }
+            JsonNode message = WorkerCommand.MAPPER.readTree(line);
+            if(!type.equals(message.path("type").asText())) {
+                throw new IOException("Worker " + address + ": " + message.path("message").asText(line));
+            }
+        }
+
+        // progress and the final result arrive on their own, whenever the worker sends them
+        private void startReading() {
+            reader = new Thread(() -> {
+                try {
+                    String line;
+                    while (!done && (line = in.readLine()) != null) {
+                        JsonNode message = WorkerCommand.MAPPER.readTree(line);
+                        switch (message.path("type").asText()) {
+                            case "progress":
+                                latest = BenchResult.fromJson(message.path("result"));
+                                break;
+                            case "done":
+                                latest = BenchResult.fromJson(message.path("result"));
+                                done = true;
+                                break;
+                            default:
+                                failure = message.path("message").asText(line);
+                                done = true;
+                        }
+                    }
+                    if(!done) {
+                        failure = "connection closed during the run";
+                    }
+                } catch (IOException | RuntimeException e) {
+                    failure = String.valueOf(e);
+                }
+                done = true;
+            }, "coordinator-" + address);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        private void awaitDone(final long millis) throws InterruptedException {
+            reader.join(millis);
+        }
+
+        private void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // nothing left to read
+            }
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.vassa.distributed;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.vassa.batch.BatchRecord;
+import com.vassa.bench.BenchOptions;
+import com.vassa.bench.BenchResult;
+import com.vassa.bench.LoadGenerator;
+import com.vassa.client.ApiClient;
+import com.vassa.client.ClientConfig;
+import com.vassa.client.ResponseSinks;
+import com.vassa.util.CommandLine;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// worker <keyPath> [--port=7799] [--bind=127.0.0.1] [--token=secret]
+// Runs the shards a coordinator sends, one at a time, with its own ApiClient and signer. The key file or keyring
+// is the one given here, on this host: it never goes over the wire and the coordinator cannot name another one.
+// Binding anywhere but loopback needs --token. JSON lines on the connection, see CoordinatorCommand:
+//   <- {"op": "prepare", "token", "endpoint", "key_id", "args": [client options], "threads", "duration_ms",
+//       "requests", "warmup_ms", "rate", "report_ms", "mix": [batch records with an optional "weight"]}
+//   -> {"type": "ready"}   once the client is built and its connections are open
+//   <- {"op": "start"}
+//   -> {"type": "progress", "elapsed_ms", "result"} every report_ms, then {"type": "done", "result"}
+//   -> {"type": "error", "message"} instead of any of them
+// Results are cumulative BenchResult.toJson snapshots, the coordinator keeps the last one of each worker.
+public class WorkerCommand {
+
+    public static final int DEFAULT_PORT = 7799;
+
+    static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static void run(final String[] args, final PrintStream out) throws Exception {
+        CommandLine commandLine = new CommandLine(args, 1);
+        String keyPath = commandLine.positional(0);
+        int port = commandLine.intOption("port", DEFAULT_PORT);
+        // loopback unless told otherwise, a worker sends signed requests for whoever connects
+        String bind = commandLine.option("bind", InetAddress.getLoopbackAddress().getHostAddress());
+        String token = commandLine.option("token", null);
+        InetAddress address = InetAddress.getByName(bind);
+        if(!address.isLoopbackAddress() && (token == null || token.isEmpty())) {
+            throw new IllegalArgumentException("Binding to " + bind + " needs --token");
+        }
+        if(!Files.exists(Paths.get(keyPath))) {
+            throw new IllegalArgumentException("Not found file in path: " + keyPath);
+        }
+        try (ServerSocket serverSocket = new ServerSocket()) {
+            serverSocket.setReuseAddress(true);
+            serverSocket.bind(new InetSocketAddress(address, port));
+            out.println(String.format("Worker listening on %s:%d", bind, serverSocket.getLocalPort()));
+            while (true) {
+                try (Socket socket = serverSocket.accept()) {
+                    socket.setTcpNoDelay(true);
+                    out.println("Coordinator connected from " + socket.getRemoteSocketAddress());
+                    serve(socket, token, keyPath, out);
+                } catch (IOException e) {
+                    out.println("Coordinator connection lost: " + e);
+                }
+            }
+        }
+    }
+
+    private static void serve(final Socket socket, final String token, final String keyPath, final PrintStream log)
+            throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        String line = in.readLine();
+        if(line == null) {
+            return;
+        }
+        try {
+            JsonNode prepare = MAPPER.readTree(line);
+            checkToken(prepare, token);
+            if(!"prepare".equals(prepare.path("op").asText())) {
+                throw new IllegalArgumentException("Expected prepare, got: " + prepare.path("op").asText());
+            }
+            if(prepare.has("key_path")) {
+                throw new IllegalArgumentException("key_path is not accepted, the worker signs with its own key");
+            }
+            runShard(prepare, keyPath, in, out, log);
+        } catch (IOException | GeneralSecurityException | InterruptedException | RuntimeException e) {
+            log.println("Shard failed: " + e);
+            ObjectNode error = message("error");
+            error.put("message", String.valueOf(e.getMessage() != null ? e.getMessage() : e));
+            send(out, error);
+            if(e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void runShard(final JsonNode prepare, final String keyPath, final BufferedReader in,
+                                 final Writer out, final PrintStream log)
+            throws IOException, GeneralSecurityException, InterruptedException {
+        BenchOptions options = new BenchOptions(prepare.path("threads").asInt(1),
+                TimeUnit.MILLISECONDS.toNanos(prepare.path("duration_ms").asLong()),
+                prepare.path("requests").asLong(),
+                TimeUnit.MILLISECONDS.toNanos(prepare.path("warmup_ms").asLong()),
+                prepare.path("rate").asDouble());
+        List<String> clientArgs = new ArrayList<>();
+        prepare.path("args").forEach(arg -> clientArgs.add(arg.asText()));
+        ClientConfig config = ClientConfig.from(new CommandLine(clientArgs.toArray(new String[0]), 0))
+                .setMaxPerRoute(options.getThreads())
+                .setMaxTotal(options.getThreads())
+                .setWarmupConnections(options.getThreads())
+                .setResponseSink(ResponseSinks.discard());
+        Mix mix = new Mix(prepare.path("mix"));
+        long reportMs = Math.max(100, prepare.path("report_ms").asLong(1000));
+
+        try (ApiClient apiClient = new ApiClient(prepare.path("endpoint").asText(), prepare.path("key_id").asText(),
+                keyPath, config)) {
+            send(out, message("ready"));
+            String start = in.readLine();
+            if(start == null || !"start".equals(MAPPER.readTree(start).path("op").asText())) {
+                throw new IOException("Coordinator did not start the run");
+            }
+            log.println(String.format("Running %d threads, %s", options.getThreads(), options.isOpenModel()
+                    ? String.format("open model at %.1f req/s", options.getRate()) : "closed loop"));
+            BenchResult result = new BenchResult();
+            long begin = System.nanoTime();
+            ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "worker-reporter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reporter.scheduleAtFixedRate(() -> {
+                ObjectNode progress = message("progress");
+                progress.put("elapsed_ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
+                progress.set("result", result.toJson(MAPPER));
+                try {
+                    send(out, progress);
+                } catch (IOException e) {
+                    // the final message will fail the same way
+                }
+            }, reportMs, reportMs, TimeUnit.MILLISECONDS);
+            try {
+                new LoadGenerator(options, () -> {
+                    BatchRecord record = mix.next();
+                    return apiClient.execute(record.getMethod(), record.getEndpoint(), record.getPayload(),
+                            record.getHeaders()).getStatus();
+                }).run(result);
+            } finally {
+                reporter.shutdownNow();
+                reporter.awaitTermination(1, TimeUnit.SECONDS);
+            }
+            ObjectNode done = message("done");
+            done.set("result", result.toJson(MAPPER));
+            send(out, done);
+            log.println(String.format("Done: %d requests in %.2f s", result.getCount(), result.getElapsedNanos() / 1e9));
+        }
+    }
+
+    private static void checkToken(final JsonNode request, final String token) {
+        if(token == null) {
+            return;
+        }
+        String given = request.path("token").asText("");
+        if(!MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), given.getBytes(StandardCharsets.UTF_8))) {
+            throw new IllegalArgumentException("Invalid token");
+        }
+    }
+
+    static ObjectNode message(final String type) {
+        ObjectNode message = MAPPER.createObjectNode();
+        message.put("type", type);
+        return message;
+    }
+
+    // progress comes from the reporter thread, the rest from the run
+    static void send(final Writer out, final JsonNode message) throws IOException {
+        synchronized (out) {
+            out.write(MAPPER.writeValueAsString(message));
+            out.write('\n');
+            out.flush();
+        }
+    }
+
+    // the request mix, picked at random in proportion to "weight" (1 when absent)
+    private static final class Mix {
+        private final BatchRecord[] records;
+        private final double[] cumulative;
+
+        private Mix(final JsonNode mix) throws IOException {
+            if(!mix.isArray() || mix.size() == 0) {
+                throw new IllegalArgumentException("The request mix is empty");
+            }
+            records = new BatchRecord[mix.size()];
+            cumulative = new double[mix.size()];
+            double total = 0;
+            for (int i = 0; i < records.length; i++) {
+                records[i] = BatchRecord.parse(MAPPER, mix.get(i));
+                double weight = mix.get(i).path("weight").asDouble(1);
+                if(weight <= 0) {
+                    throw new IllegalArgumentException("Weight is not valid: " + weight);
+                }
+                total += weight;
+                cumulative[i] = total;
+            }
+        }
+
+        private BatchRecord next() {
+            if(records.length == 1) {
+                return records[0];
+            }
+            double point = ThreadLocalRandom.current().nextDouble(cumulative[cumulative.length - 1]);
+            for (int i = 0; i < cumulative.length; i++) {
+                if(point < cumulative[i]) {
+                    return records[i];
+                }
+            }
+            return records[records.length - 1];
+        }
+    }
+}
@@ -1,8 +1,6 @@
 package com.vassa.domain;
 
 import javax.crypto.Mac;
-import java.util.Arrays;
-import java.util.Optional;
 
 public enum Algorithm {
 
@@ -60,6 +58,9 @@ public enum Algorithm {
     ECDSA_SHA256_P1363("SHA256withECDSAinP1363Format", "ecdsa-sha256-p1363", java.security.Signature.class),
     ECDSA_SHA384_P1363("SHA384withECDSAinP1363Format", "ecdsa-sha384-p1363", java.security.Signature.class),
     ECDSA_SHA512_P1363("SHA512withECDSAinP1363Format", "ecdsa-sha512-p1363", java.security.Signature.class),
+
+    // EdDSA (RFC 8032), needs JDK 15+
+    ED25519("Ed25519", "ed25519", java.security.Signature.class),
     ;
 
     private final String portableName;
@@ -93,10 +94,7 @@ public enum Algorithm {
     }
 
     public static Algorithm get(final String name) {
-        Optional<Algorithm> optAlgorithm = Arrays.asList(Algorithm.values()).stream()
-                .filter(a -> a.getPortableName().equals(name))
-                .findFirst();
-        return optAlgorithm.isPresent() ? optAlgorithm.get() : null;
+        return AlgorithmRegistry.get(name);
     }
 
 }
@@ -0,0 +1,231 @@
+package com.vassa.domain;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.Security;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PSSParameterSpec;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public final class AlgorithmRegistry {
+
+    public static final String PROBE_PROPERTY = "satiscript.providers.probe";
+
+    private static final PSSParameterSpec PSS_SHA256 =
+            new PSSParameterSpec("SHA-256", "MGF1", MGF1ParameterSpec.SHA256, 32, 1);
+    private static final long PROBE_BUDGET_MS = 100;
+    private static final byte[] PROBE_PAYLOAD = ("(request-target): post /probe\n" +
+            "date: 1970-01-01T00:00:00Z\n" +
+            "digest: 0000000000000000000000000000000000000000000000000000000000000000")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private static final Map<String, Algorithm> BY_PORTABLE_NAME;
+    private static volatile Map<Algorithm, Selection> selections = Collections.emptyMap();
+
+    static {
+        Map<String, Algorithm> byName = new HashMap<>();
+        for (Algorithm algorithm : Algorithm.values()) {
+            byName.put(algorithm.getPortableName(), algorithm);
+        }
+        BY_PORTABLE_NAME = Collections.unmodifiableMap(byName);
+        if(Boolean.getBoolean(PROBE_PROPERTY)) {
+            probe();
+            report().forEach(System.out::println);
+        }
+    }
+
+    private AlgorithmRegistry() {
+    }
+
+    public static Algorithm get(final String portableName) {
+        return portableName == null ? null : BY_PORTABLE_NAME.get(portableName);
+    }
+
+    public static Signature newSignature(final Algorithm algorithm) throws GeneralSecurityException {
+        final Selection selection = selections.get(algorithm);
+        final Signature signature = selection == null
+                ? Signature.getInstance(algorithm.getJvmName())
+                : Signature.getInstance(algorithm.getJvmName(), selection.provider);
+        if(algorithm == Algorithm.RSA_PSS) {
+            signature.setParameter(PSS_SHA256);
+        }
+        return signature;
+    }
+
+    public static Mac newMac(final Algorithm algorithm) throws NoSuchAlgorithmException {
+        final Selection selection = selections.get(algorithm);
+        return selection == null
+                ? Mac.getInstance(algorithm.getJvmName())
+                : Mac.getInstance(algorithm.getJvmName(), selection.provider);
+    }
+
+    public static synchronized void probe() {
+        final Map<Algorithm, Selection> probed = new EnumMap<>(Algorithm.class);
+        final Map<String, Key> keys = new HashMap<>();
+        for (Algorithm algorithm : Algorithm.values()) {
+            final Key key;
+            try {
+                key = keys.computeIfAbsent(keyFamily(algorithm), AlgorithmRegistry::generateKey);
+            } catch (RuntimeException e) {
+                continue;
+            }
+            Selection best = null;
+            int candidates = 0;
+            for (Provider provider : Security.getProviders()) {
+                if(provider.getService(serviceType(algorithm), algorithm.getJvmName()) == null) {
+                    continue;
+                }
+                candidates++;
+                try {
+                    final double opsPerSecond = measure(algorithm, provider, key);
+                    if(best == null || opsPerSecond > best.opsPerSecond) {
+                        best = new Selection(provider, opsPerSecond, 0);
+                    }
+                } catch (GeneralSecurityException | RuntimeException e) {
+                    // this provider cannot use a standard key for the algorithm, skip it
+                }
+            }
+            if(best != null) {
+                probed.put(algorithm, new Selection(best.provider, best.opsPerSecond, candidates));
+            }
+        }
+        selections = Collections.unmodifiableMap(probed);
+    }
+
+    public static List<String> report() {
+        final Map<Algorithm, Selection> current = selections;
+        final List<String> lines = new ArrayList<>();
+        for (Algorithm algorithm : Algorithm.values()) {
+            final Selection selection = current.get(algorithm);
+            if(selection != null) {
+                lines.add(String.format("%-20s %-14s %10.0f ops/s (fastest of %d)", algorithm.getPortableName(),
+                        selection.provider.getName(), selection.opsPerSecond, selection.candidates));
+            } else {
+                lines.add(String.format("%-20s %-14s", algorithm.getPortableName(), defaultProvider(algorithm)));
+            }
+        }
+        return lines;
+    }
+
+    public static Provider selectedProvider(final Algorithm algorithm) {
+        final Selection selection = selections.get(algorithm);
+        return selection == null ? null : selection.provider;
+    }
+
+    private static String defaultProvider(final Algorithm algorithm) {
+        try {
+            return Signature.class.equals(algorithm.getType())
+                    ? Signature.getInstance(algorithm.getJvmName()).getProvider().getName() + " (default)"
+                    : Mac.getInstance(algorithm.getJvmName()).getProvider().getName() + " (default)";
+        } catch (NoSuchAlgorithmException e) {
+            return "unavailable";
+        }
+    }
+
+    private static double measure(final Algorithm algorithm, final Provider provider, final Key key)
+            throws GeneralSecurityException {
+        final long budget = TimeUnit.MILLISECONDS.toNanos(PROBE_BUDGET_MS);
+        if(Mac.class.equals(algorithm.getType())) {
+            final Mac mac = Mac.getInstance(algorithm.getJvmName(), provider);
+            mac.init(key);
+            return run(budget, () -> mac.doFinal(PROBE_PAYLOAD));
+        }
+        final Signature signature = Signature.getInstance(algorithm.getJvmName(), provider);
+        if(algorithm == Algorithm.RSA_PSS) {
+            signature.setParameter(PSS_SHA256);
+        }
+        signature.initSign((PrivateKey) key);
+        return run(budget, () -> {
+            signature.update(PROBE_PAYLOAD);
+            signature.sign();
+        });
+    }
+
+    private static double run(final long budgetNanos, final Operation operation) throws GeneralSecurityException {
+        // the first half of the budget is warm-up
+        final long warmupEnd = System.nanoTime() + budgetNanos / 2;
+        while (System.nanoTime() < warmupEnd) {
+            operation.run();
+        }
+        final long start = System.nanoTime();
+        long ops = 0;
+        long elapsed;
+        do {
+            operation.run();
+            ops++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < budgetNanos / 2);
+        return ops * 1e9 / elapsed;
+    }
+
+    private static String serviceType(final Algorithm algorithm) {
+        return Mac.class.equals(algorithm.getType()) ? "Mac" : "Signature";
+    }
+
+    private static String keyFamily(final Algorithm algorithm) {
+        final String jvmName = algorithm.getJvmName();
+        if(Mac.class.equals(algorithm.getType())) {
+            return "HMAC";
+        } else if(jvmName.contains("ECDSA")) {
+            return "EC";
+        } else if(jvmName.contains("DSA")) {
+            return "DSA";
+        } else if(jvmName.contains("RSA")) {
+            return "RSA";
+        }
+        return jvmName;
+    }
+
+    private static Key generateKey(final String family) {
+        try {
+            switch (family) {
+                case "HMAC":
+                    return new SecretKeySpec(new byte[32], "HMAC");
+                case "EC":
+                    KeyPairGenerator ec = KeyPairGenerator.getInstance("EC");
+                    ec.initialize(new ECGenParameterSpec("secp256r1"));
+                    return ec.generateKeyPair().getPrivate();
+                case "RSA":
+                case "DSA":
+                    KeyPairGenerator generator = KeyPairGenerator.getInstance(family);
+                    generator.initialize(2048);
+                    return generator.generateKeyPair().getPrivate();
+                default:
+                    return KeyPairGenerator.getInstance(family).generateKeyPair().getPrivate();
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot generate a probe key for " + family, e);
+        }
+    }
+
+    private interface Operation {
+        void run() throws GeneralSecurityException;
+    }
+
+    private static final class Selection {
+        private final Provider provider;
+        private final double opsPerSecond;
+        private final int candidates;
+
+        private Selection(final Provider provider, final double opsPerSecond, final int candidates) {
+            this.provider = provider;
+            this.opsPerSecond = opsPerSecond;
+            this.candidates = candidates;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.vassa.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class Counter implements ValueMXBean {
+
+    private final String name;
+    private final String help;
+    private final LongAdder value = new LongAdder();
+
+    Counter(final String name, final String help) {
+        this.name = name;
+        this.help = help;
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+
+    @Override
+    public long getValue() {
+        return value.sum();
+    }
+}
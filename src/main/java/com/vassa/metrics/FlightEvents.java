@@ -0,0 +1,139 @@
+package com.vassa.metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+// JDK Flight Recorder events for signatures, digests, signed requests and API calls, category "Satiscript".
+// They land next to the GC and safepoint events of any running recording, once the probes are loaded: by --jfr,
+// or at the first event when the recorder is already up (-XX:StartFlightRecording, or a jcmd JFR.start before
+// that). A jcmd JFR.start later on does not see them. Otherwise nothing of the recorder is started, that costs
+// hundreds of milliseconds, and begin*() is a volatile read that returns null, the matching commit a null check.
+// The jdk.jfr side is JfrEvents in src/main/java11, compiled only on JDK 11+ and reached through Probes, so the
+// rest of the tree builds and runs on Java 8 without it.
+public final class FlightEvents {
+
+    private static final String PROBES_CLASS = "com.vassa.metrics.JfrEvents";
+
+    // no initializers: both are set during class init when the recorder is up
+    private static volatile Probes probes;
+    // set by the recorder listener of JfrEvents, only after probes
+    private static volatile boolean recording;
+
+    static {
+        if(recorderInitialized()) {
+            load();
+        }
+    }
+
+    private FlightEvents() {
+    }
+
+    interface Probes {
+        Object beginSignature();
+
+        void commitSignature(Object event, String algorithm, String keyId, int bytes);
+
+        Object beginDigest();
+
+        void commitDigest(Object event, String algorithm, long payloadBytes);
+
+        Object beginSignRequest();
+
+        void commitSignRequest(Object event, String method, String target, String keyId, String algorithm);
+
+        Object beginApiCall();
+
+        void commitApiCall(Object event, String method, String target, int status, long poolWaitNanos,
+                           long timeToFirstByteNanos);
+
+        Closeable startRecording(Path file) throws IOException;
+
+        // registers the listener that calls setRecording
+        void watchRecordings();
+    }
+
+    // whether the probes are loaded, see above
+    public static boolean available() {
+        return probes != null;
+    }
+
+    static void setRecording(final boolean value) {
+        recording = value;
+    }
+
+    public static Object beginSignature() {
+        return recording ? probes.beginSignature() : null;
+    }
+
+    public static void commitSignature(final Object event, final String algorithm, final String keyId, final int bytes) {
+        if(event != null) {
+            probes.commitSignature(event, algorithm, keyId, bytes);
+        }
+    }
+
+    public static Object beginDigest() {
+        return recording ? probes.beginDigest() : null;
+    }
+
+    public static void commitDigest(final Object event, final String algorithm, final long payloadBytes) {
+        if(event != null) {
+            probes.commitDigest(event, algorithm, payloadBytes);
+        }
+    }
+
+    public static Object beginSignRequest() {
+        return recording ? probes.beginSignRequest() : null;
+    }
+
+    public static void commitSignRequest(final Object event, final String method, final String target,
+                                         final String keyId, final String algorithm) {
+        if(event != null) {
+            probes.commitSignRequest(event, method, target, keyId, algorithm);
+        }
+    }
+
+    public static Object beginApiCall() {
+        return recording ? probes.beginApiCall() : null;
+    }
+
+    // status 0 when the call failed without a response
+    public static void commitApiCall(final Object event, final String method, final String target, final int status,
+                                     final long poolWaitNanos, final long timeToFirstByteNanos) {
+        if(event != null) {
+            probes.commitApiCall(event, method, target, status, poolWaitNanos, timeToFirstByteNanos);
+        }
+    }
+
+    // starts a recording with the JDK "profile" settings plus the events above, dumped to file by close()
+    public static Closeable startRecording(final Path file) throws IOException {
+        final Probes loaded = load();
+        if(loaded == null) {
+            throw new IllegalStateException("This JVM has no flight recorder (jdk.jfr)");
+        }
+        return loaded.startRecording(file);
+    }
+
+    // null on Java 8 builds and on JVMs without jdk.jfr
+    private static synchronized Probes load() {
+        if(probes == null) {
+            try {
+                final Probes loaded = (Probes) Class.forName(PROBES_CLASS).getDeclaredConstructor().newInstance();
+                probes = loaded;
+                loaded.watchRecordings();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                return null;
+            }
+        }
+        return probes;
+    }
+
+    // FlightRecorder.isInitialized() loads three small classes and starts nothing, unlike getFlightRecorder()
+    private static boolean recorderInitialized() {
+        try {
+            return (Boolean) Class.forName("jdk.jfr.FlightRecorder").getMethod("isInitialized").invoke(null);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.vassa.metrics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+// Sum of the registered sources, e.g. leased connections over every open ApiClient.
+public class Gauge implements ValueMXBean {
+
+    private final String name;
+    private final String help;
+    private final List<LongSupplier> sources = new CopyOnWriteArrayList<>();
+
+    Gauge(final String name, final String help) {
+        this.name = name;
+        this.help = help;
+    }
+
+    public void register(final LongSupplier source) {
+        sources.add(source);
+    }
+
+    public void unregister(final LongSupplier source) {
+        sources.remove(source);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+
+    @Override
+    public long getValue() {
+        long value = 0;
+        for (LongSupplier source : sources) {
+            value += source.getAsLong();
+        }
+        return value;
+    }
+}
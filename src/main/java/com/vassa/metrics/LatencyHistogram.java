@@ -0,0 +1,129 @@
+package com.vassa.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Log-linear histogram of microsecond values: exact below 256us, then 128 linear
+// sub-buckets per power of two (under 1% relative error) up to one hour.
+// Recording is a single atomic increment, histograms with the same layout can be merged.
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+    private static final long MAX_MICROS = TimeUnit.HOURS.toMicros(1);
+    public static final int BUCKETS = indexOf(MAX_MICROS) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    public void recordNanos(final long nanos) {
+        recordMicros(nanos / 1000);
+    }
+
+    public void recordMicros(final long micros) {
+        final long value = Math.min(Math.max(micros, 0), MAX_MICROS);
+        counts.incrementAndGet(indexOf(value));
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    public void add(final LatencyHistogram other) {
+        add(other.counts(), other.getMaxMicros());
+    }
+
+    public void add(final long[] otherCounts, final long otherMax) {
+        if(otherCounts.length != BUCKETS) {
+            throw new IllegalArgumentException("Histogram layout mismatch: " + otherCounts.length + " buckets");
+        }
+        for (int i = 0; i < otherCounts.length; i++) {
+            if(otherCounts[i] != 0) {
+                counts.addAndGet(i, otherCounts[i]);
+            }
+        }
+        long current = max.get();
+        while (otherMax > current && !max.compareAndSet(current, otherMax)) {
+            current = max.get();
+        }
+    }
+
+    public long[] counts() {
+        final long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    public long getTotalCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    public long getMaxMicros() {
+        return max.get();
+    }
+
+    public double getMeanMicros() {
+        long total = 0;
+        double sum = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            final long count = counts.get(i);
+            total += count;
+            sum += (double) count * valueOf(i);
+        }
+        return total == 0 ? 0 : sum / total;
+    }
+
+    public long percentileMicros(final double percentile) {
+        final long[] snapshot = counts();
+        long total = 0;
+        for (long count : snapshot) {
+            total += count;
+        }
+        if(total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if(seen >= rank) {
+                return Math.min(valueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        max.set(0);
+    }
+
+    static int indexOf(final long value) {
+        if(value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + (int) ((value >> shift) - SUB_BUCKETS);
+    }
+
+    // highest value that falls in the bucket
+    static long valueOf(final int index) {
+        if(index < LINEAR_LIMIT) {
+            return index;
+        }
+        final int offset = index - LINEAR_LIMIT;
+        final int shift = offset / SUB_BUCKETS + 1;
+        final long mantissa = offset % SUB_BUCKETS + SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
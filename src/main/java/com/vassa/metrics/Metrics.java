@@ -0,0 +1,154 @@
+package com.vassa.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Process wide timings of the request phases. Disabled by default: Metrics.start() returns 0 without reading
+// the clock and the timers ignore it, so the instrumented paths cost a volatile read.
+public final class Metrics {
+
+    private static final List<Timer> TIMERS = new ArrayList<>();
+    private static final List<Counter> COUNTERS = new ArrayList<>();
+    private static final List<Gauge> GAUGES = new ArrayList<>();
+    private static final Map<Integer, Counter> RESPONSES = new ConcurrentSkipListMap<>();
+
+    public static final Timer API_CALL = timer("satiscript_api_call_seconds",
+            "Blocking ApiClient call: sign, send and read the response");
+    public static final Timer SIGN_REQUEST = timer("satiscript_sign_request_seconds",
+            "RequestSigner.signRequest: Date header, signing string, signature, Authorization header");
+    public static final Timer SIGNATURE = timer("satiscript_signature_seconds",
+            "Private key or HMAC operation inside Signer");
+    public static final Timer PAYLOAD_DIGEST = timer("satiscript_payload_digest_seconds",
+            "Digest header computation over the payload");
+    public static final Timer CONNECTION_LEASE = timer("satiscript_connection_lease_seconds",
+            "Wait for a connection from the ApiClient pool");
+    public static final Timer CONNECT = timer("satiscript_connect_seconds",
+            "Opening a new pooled connection, TCP and TLS handshake");
+    public static final Timer TIME_TO_FIRST_BYTE = timer("satiscript_time_to_first_byte_seconds",
+            "From the request being fully sent to the response headers");
+    public static final Timer RESPONSE_READ = timer("satiscript_response_read_seconds",
+            "Reading a 200 body: role lookup plus the response sink");
+
+    public static final Counter ERRORS = counter("satiscript_errors_total",
+            "Calls that failed without an HTTP response");
+
+    public static final Gauge POOL_LEASED = gauge("satiscript_pool_leased_connections",
+            "Connections currently leased from the ApiClient pools");
+    public static final Gauge POOL_AVAILABLE = gauge("satiscript_pool_available_connections",
+            "Idle connections kept in the ApiClient pools");
+    public static final Gauge POOL_PENDING = gauge("satiscript_pool_pending_requests",
+            "Requests waiting for a pooled connection");
+    public static final Gauge CONCURRENCY_LIMIT = gauge("satiscript_concurrency_limit",
+            "Calls the adaptive limiters currently allow in flight");
+    public static final Gauge LIMITER_WAITING = gauge("satiscript_limiter_waiting_calls",
+            "Calls blocked on an adaptive limiter");
+
+    private static volatile boolean enabled;
+    private static boolean jmxRegistered;
+
+    private Metrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void enable() {
+        enabled = true;
+    }
+
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public static void response(final int status) {
+        if(enabled) {
+            RESPONSES.computeIfAbsent(status, s -> new Counter("satiscript_responses_total", "Responses by status"))
+                    .increment();
+        }
+    }
+
+    public static void error() {
+        if(enabled) {
+            ERRORS.increment();
+        }
+    }
+
+    public static List<Timer> timers() {
+        return Collections.unmodifiableList(TIMERS);
+    }
+
+    public static List<Counter> counters() {
+        return Collections.unmodifiableList(COUNTERS);
+    }
+
+    public static List<Gauge> gauges() {
+        return Collections.unmodifiableList(GAUGES);
+    }
+
+    public static Map<Integer, Counter> responses() {
+        return Collections.unmodifiableMap(RESPONSES);
+    }
+
+    // registers every metric as com.vassa.satiscript:type=...,name=... in the platform MBean server
+    public static synchronized void registerMBeans() {
+        if(jmxRegistered) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (Timer timer : TIMERS) {
+                server.registerMBean(timer, objectName("Timer", timer.getName()));
+            }
+            for (Counter counter : COUNTERS) {
+                server.registerMBean(counter, objectName("Counter", counter.getName()));
+            }
+            for (Gauge gauge : GAUGES) {
+                server.registerMBean(gauge, objectName("Gauge", gauge.getName()));
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register metrics MBeans: " + e, e);
+        }
+        jmxRegistered = true;
+    }
+
+    public static void print(final PrintStream out) {
+        out.println(String.format("%-40s %8s %10s %10s %10s %10s", "phase", "count", "mean ms", "p50 ms", "p99 ms", "max ms"));
+        for (Timer timer : TIMERS) {
+            if(timer.getCount() > 0) {
+                out.println(String.format("%-40s %8d %10.3f %10.3f %10.3f %10.3f", timer.getName(), timer.getCount(),
+                        timer.getMeanMillis(), timer.getP50Millis(), timer.getP99Millis(), timer.getMaxMillis()));
+            }
+        }
+    }
+
+    private static ObjectName objectName(final String type, final String name) throws JMException {
+        return new ObjectName("com.vassa.satiscript:type=" + type + ",name=" + name);
+    }
+
+    private static Timer timer(final String name, final String help) {
+        Timer timer = new Timer(name, help);
+        TIMERS.add(timer);
+        return timer;
+    }
+
+    private static Counter counter(final String name, final String help) {
+        Counter counter = new Counter(name, help);
+        COUNTERS.add(counter);
+        return counter;
+    }
+
+    private static Gauge gauge(final String name, final String help) {
+        Gauge gauge = new Gauge(name, help);
+        GAUGES.add(gauge);
+        return gauge;
+    }
+}
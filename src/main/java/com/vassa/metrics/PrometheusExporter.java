@@ -0,0 +1,88 @@
+package com.vassa.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+
+// Serves Metrics in the Prometheus text format on http://host:port/metrics. Timers are exported as
+// summaries (quantiles from the LatencyHistogram, exact _sum and _count).
+public class PrometheusExporter implements Closeable {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer server;
+
+    // loopback only, the metrics name the endpoint and keyId of the run
+    public PrometheusExporter(final int port) throws IOException {
+        this(InetAddress.getLoopbackAddress(), port);
+    }
+
+    public PrometheusExporter(final InetAddress bind, final int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(bind, port), 0);
+        this.server.createContext("/metrics", exchange -> {
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        // the dispatcher thread inherits the daemon flag of the thread calling start(), so it never keeps the JVM alive
+        Thread thread = new Thread(server::start, "metrics-exporter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public static String scrape() {
+        StringBuilder sb = new StringBuilder(4096);
+        for (Timer timer : Metrics.timers()) {
+            header(sb, timer.getName(), timer.getHelp(), "summary");
+            for (double quantile : QUANTILES) {
+                sb.append(timer.getName()).append("{quantile=\"").append(quantile).append("\"} ")
+                        .append(seconds(timer.getHistogram().percentileMicros(quantile * 100) * 1000)).append('\n');
+            }
+            sb.append(timer.getName()).append("_sum ").append(seconds((long) (timer.getTotalMillis() * 1e6))).append('\n');
+            sb.append(timer.getName()).append("_count ").append(timer.getCount()).append('\n');
+        }
+        for (Counter counter : Metrics.counters()) {
+            header(sb, counter.getName(), counter.getHelp(), "counter");
+            sb.append(counter.getName()).append(' ').append(counter.getValue()).append('\n');
+        }
+        header(sb, "satiscript_responses_total", "Responses by status", "counter");
+        for (Map.Entry<Integer, Counter> entry : Metrics.responses().entrySet()) {
+            sb.append("satiscript_responses_total{status=\"").append(entry.getKey()).append("\"} ")
+                    .append(entry.getValue().getValue()).append('\n');
+        }
+        for (Gauge gauge : Metrics.gauges()) {
+            header(sb, gauge.getName(), gauge.getHelp(), "gauge");
+            sb.append(gauge.getName()).append(' ').append(gauge.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void header(final StringBuilder sb, final String name, final String help, final String type) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String seconds(final long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
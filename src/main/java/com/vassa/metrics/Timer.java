@@ -0,0 +1,79 @@
+package com.vassa.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// A latency histogram plus exact count and sum, recorded with Metrics.start() and stop(start).
+public class Timer implements TimerMXBean {
+
+    private final String name;
+    private final String help;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    Timer(final String name, final String help) {
+        this.name = name;
+        this.help = help;
+    }
+
+    // start is 0 when metrics were disabled at Metrics.start(), nothing is recorded then
+    public void stop(final long start) {
+        if(start != 0) {
+            record(System.nanoTime() - start);
+        }
+    }
+
+    public void record(final long nanos) {
+        histogram.recordNanos(nanos);
+        count.increment();
+        totalNanos.add(nanos);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getTotalMillis() {
+        return totalNanos.sum() / 1e6;
+    }
+
+    @Override
+    public double getMeanMillis() {
+        final long n = count.sum();
+        return n == 0 ? 0 : totalNanos.sum() / 1e6 / n;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return histogram.percentileMicros(50) / 1e3;
+    }
+
+    @Override
+    public double getP99Millis() {
+        return histogram.percentileMicros(99) / 1e3;
+    }
+
+    @Override
+    public double getP999Millis() {
+        return histogram.percentileMicros(99.9) / 1e3;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return histogram.getMaxMicros() / 1e3;
+    }
+}
@@ -0,0 +1,6 @@
+package com.vassa.metrics;
+
+public interface ValueMXBean {
+
+    long getValue();
+}
@@ -0,0 +1,136 @@
+package com.vassa.mock;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Service time of the mock server, in milliseconds on the command line:
+//   20 or fixed:20        always 20 ms
+//   uniform:10-50         anywhere between 10 and 50 ms
+//   normal:20,5           mean 20 ms, standard deviation 5 ms, never below 0
+//   exponential:20        mean 20 ms, memoryless like independent arrivals
+//   lognormal:20,0.5      median 20 ms and sigma 0.5, a long right tail like most real services
+public abstract class LatencyDistribution {
+
+    public static final LatencyDistribution NONE = fixed(0);
+
+    private final String spec;
+
+    private LatencyDistribution(final String spec) {
+        this.spec = spec;
+    }
+
+    public abstract long nextNanos(Random random);
+
+    public static LatencyDistribution fixed(final double millis) {
+        checkNotNegative(millis);
+        final long nanos = toNanos(millis);
+        return new LatencyDistribution("fixed:" + millis) {
+            @Override
+            public long nextNanos(final Random random) {
+                return nanos;
+            }
+        };
+    }
+
+    public static LatencyDistribution parse(final String spec) {
+        final int colon = spec.indexOf(':');
+        final String kind = colon < 0 ? "fixed" : spec.substring(0, colon).trim().toLowerCase();
+        final String arguments = colon < 0 ? spec : spec.substring(colon + 1);
+        try {
+            switch (kind) {
+                case "fixed":
+                    return fixed(Double.parseDouble(arguments.trim()));
+                case "uniform":
+                    return uniform(spec, numbers(arguments, "-", 2));
+                case "normal":
+                    return normal(spec, numbers(arguments, ",", 2));
+                case "exponential":
+                case "exp":
+                    return exponential(spec, numbers(arguments, ",", 1));
+                case "lognormal":
+                    return lognormal(spec, numbers(arguments, ",", 2));
+                default:
+                    throw new IllegalArgumentException("Latency distribution is not valid: " + spec);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Latency distribution is not valid: " + spec);
+        }
+    }
+
+    private static LatencyDistribution uniform(final String spec, final double[] range) {
+        checkNotNegative(range[0]);
+        if(range[1] < range[0]) {
+            throw new IllegalArgumentException("Latency range is not valid: " + spec);
+        }
+        final long from = toNanos(range[0]);
+        final long width = toNanos(range[1]) - from;
+        return new LatencyDistribution(spec) {
+            @Override
+            public long nextNanos(final Random random) {
+                return from + (long) (random.nextDouble() * width);
+            }
+        };
+    }
+
+    private static LatencyDistribution normal(final String spec, final double[] meanStddev) {
+        checkNotNegative(meanStddev[0]);
+        checkNotNegative(meanStddev[1]);
+        return new LatencyDistribution(spec) {
+            @Override
+            public long nextNanos(final Random random) {
+                return Math.max(0, toNanos(meanStddev[0] + random.nextGaussian() * meanStddev[1]));
+            }
+        };
+    }
+
+    private static LatencyDistribution exponential(final String spec, final double[] mean) {
+        checkNotNegative(mean[0]);
+        return new LatencyDistribution(spec) {
+            @Override
+            public long nextNanos(final Random random) {
+                return toNanos(-mean[0] * Math.log(1 - random.nextDouble()));
+            }
+        };
+    }
+
+    private static LatencyDistribution lognormal(final String spec, final double[] medianSigma) {
+        if(medianSigma[0] <= 0) {
+            throw new IllegalArgumentException("Latency median is not valid: " + spec);
+        }
+        checkNotNegative(medianSigma[1]);
+        final double mu = Math.log(medianSigma[0]);
+        return new LatencyDistribution(spec) {
+            @Override
+            public long nextNanos(final Random random) {
+                return toNanos(Math.exp(mu + random.nextGaussian() * medianSigma[1]));
+            }
+        };
+    }
+
+    private static double[] numbers(final String arguments, final String separator, final int count) {
+        final String[] parts = arguments.split(separator);
+        if(parts.length != count) {
+            throw new NumberFormatException(arguments);
+        }
+        final double[] numbers = new double[count];
+        for (int i = 0; i < count; i++) {
+            numbers[i] = Double.parseDouble(parts[i].trim());
+        }
+        return numbers;
+    }
+
+    private static void checkNotNegative(final double value) {
+        if(value < 0 || Double.isNaN(value)) {
+            throw new IllegalArgumentException("Latency is not valid: " + value);
+        }
+    }
+
+    private static long toNanos(final double millis) {
+        return (long) (millis * TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
@@ -0,0 +1,315 @@
+package com.vassa.mock;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.vassa.client.PayloadDigest;
+import com.vassa.security.Verifier;
+import com.vassa.security.VerifierConfig;
+import com.vassa.util.PrivateKeyUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// A signed API on the JDK's own HTTP server, for measuring the client on one machine without the network. Every
+// request is answered like the real service: 200 with authentication_key.role when the signature verifies, 403
+// when it does not, 400 when the digest header does not match the body. Requests without Authorization, like the
+// endpoint check of ApiClient, get a 200 with the PUBLIC role and no injected error. Around that, the config adds
+// a service time drawn from a LatencyDistribution, a bandwidth limit on each body, injected error statuses and
+// a concurrency cap. Embedded in another program, run it with -Dsun.net.httpserver.nodelay=true, see
+// MockServerCommand.
+public class MockServer implements Closeable {
+
+    private static final String[] KEY_EXTENSIONS = {".pem", ".pub", ".key"};
+    private static final String RETRY_AFTER_SECONDS = "1";
+    private static final int MAX_CHUNK = 64 * 1024;
+    private static final int BACKLOG = 1024;
+
+    private final MockServerConfig config;
+    private final Verifier verifier;
+    private final byte[] validBody;
+    private final byte[] publicBody;
+    private final Semaphore concurrency;
+    private final int chunk;
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public MockServer(final MockServerConfig config) throws IOException, GeneralSecurityException {
+        this.config = config;
+        this.verifier = config.getKeys() == null ? null : new Verifier(resolver(config.getKeys()),
+                VerifierConfig.defaults().setMaxSkewMs(config.getMaxSkewMs()));
+        this.validBody = body(config.getRole(), config.getBodyBytes());
+        this.publicBody = body("PUBLIC", config.getBodyBytes());
+        this.concurrency = config.getMaxConcurrency() > 0 ? new Semaphore(config.getMaxConcurrency()) : null;
+        this.chunk = (int) Math.max(1024, Math.min(MAX_CHUNK, config.getBandwidth() / 50));
+    }
+
+    // one file for every keyId is read now, so a bad key fails here instead of on every request
+    private static Verifier.KeyResolver resolver(final Path keys) throws IOException, GeneralSecurityException {
+        if(!Files.isDirectory(keys)) {
+            final Key key = PrivateKeyUtil.loadPublicKey(keys);
+            return keyId -> key;
+        }
+        return keyId -> {
+            if(keyId.isEmpty() || keyId.contains("/") || keyId.contains("\\") || keyId.startsWith(".")) {
+                return null;
+            }
+            for (String extension : KEY_EXTENSIONS) {
+                final Path file = keys.resolve(keyId + extension);
+                if(Files.isRegularFile(file)) {
+                    return PrivateKeyUtil.loadPublicKey(file);
+                }
+            }
+            return null;
+        };
+    }
+
+    private static byte[] body(final String role, final int bodyBytes) {
+        final String json = "{\"authentication_key\":{\"role\":\"" + role + "\"}";
+        final int padding = bodyBytes - json.length() - "}".length() - ",\"padding\":\"\"".length();
+        if(padding <= 0) {
+            return (json + "}").getBytes(StandardCharsets.UTF_8);
+        }
+        final char[] filler = new char[padding];
+        Arrays.fill(filler, 'x');
+        return (json + ",\"padding\":\"" + new String(filler) + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    public MockServer start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getByName(config.getBind()), config.getPort()),
+                BACKLOG);
+        // one thread per request in flight, the concurrency cap is the only limit
+        final AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "mock-server-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        return this;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public String getEndpoint() {
+        return String.format("http://%s:%d/", config.getBind(), getPort());
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        final long received = System.nanoTime();
+        try {
+            if(concurrency != null && !concurrency.tryAcquire()) {
+                // over capacity answers at once, like a load balancer shedding load
+                exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER_SECONDS);
+                respond(exchange, 503, error("TooManyRequests", "Over the concurrency limit"));
+                return;
+            }
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                process(exchange, received);
+            } finally {
+                inFlight.decrementAndGet();
+                if(concurrency != null) {
+                    concurrency.release();
+                }
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void process(final HttpExchange exchange, final long received) throws IOException {
+        final byte[] requestBody = read(exchange.getRequestBody());
+        final Headers headers = exchange.getRequestHeaders();
+        final boolean signed = headers.getFirst("Authorization") != null;
+        // the unsigned endpoint check always gets through, errors are for the measured requests
+        final Integer injected = signed ? injectedError() : null;
+        int status = 200;
+        byte[] body = validBody;
+        if(!signed) {
+            body = publicBody;
+        } else if(injected != null) {
+            status = injected;
+            body = error("Injected", "Injected error " + injected);
+            if(status == 429 || status == 503) {
+                exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER_SECONDS);
+            }
+        } else {
+            final Verifier.Result result = verify(exchange);
+            if(result != Verifier.Result.VALID) {
+                status = 403;
+                body = error("NotAuthenticated", result.name());
+            } else if(config.isCheckDigest() && hasBody(headers)
+                    && !digestMatches(headers.getFirst("digest"), requestBody)) {
+                status = 400;
+                body = error("InvalidParameter", "The digest header does not match the body");
+            }
+        }
+        sleepUntil(received + config.getLatency().nextNanos(ThreadLocalRandom.current()));
+        respond(exchange, status, body);
+    }
+
+    private Integer injectedError() {
+        if(config.getErrors().isEmpty()) {
+            return null;
+        }
+        double point = ThreadLocalRandom.current().nextDouble();
+        for (Map.Entry<Integer, Double> error : config.getErrors().entrySet()) {
+            point -= error.getValue();
+            if(point < 0) {
+                return error.getKey();
+            }
+        }
+        return null;
+    }
+
+    private Verifier.Result verify(final HttpExchange exchange) {
+        if(verifier == null) {
+            return Verifier.Result.VALID;
+        }
+        final Map<String, String> headers = new HashMap<>();
+        for (Map.Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet()) {
+            if(!header.getValue().isEmpty()) {
+                headers.put(header.getKey().toLowerCase(), header.getValue().get(0));
+            }
+        }
+        String uri = exchange.getRequestURI().getRawPath();
+        final String query = exchange.getRequestURI().getRawQuery();
+        if(query != null && !query.trim().isEmpty()) {
+            uri = uri + "?" + query;
+        }
+        return verifier.verify(exchange.getRequestMethod(), uri, headers, headers.get("authorization"));
+    }
+
+    // the client digests the payload of a GET or DELETE too but does not send it, there is nothing to compare
+    private static boolean hasBody(final Headers headers) {
+        return headers.getFirst("Content-Length") != null || headers.getFirst("Transfer-Encoding") != null;
+    }
+
+    // hex for the sha256/sha512 digests of the client, "SHA-256=<base64>" for the RFC 3230 ones; no header is fine
+    private static boolean digestMatches(final String digest, final byte[] body) {
+        if(digest == null) {
+            return true;
+        }
+        final PayloadDigest algorithm;
+        if(digest.startsWith("SHA-256=")) {
+            algorithm = PayloadDigest.RFC3230_SHA256;
+        } else if(digest.startsWith("SHA-512=")) {
+            algorithm = PayloadDigest.RFC3230_SHA512;
+        } else if(digest.length() == 64) {
+            algorithm = PayloadDigest.SHA256;
+        } else if(digest.length() == 128) {
+            algorithm = PayloadDigest.SHA512;
+        } else {
+            return false;
+        }
+        return algorithm.digest(body).equalsIgnoreCase(digest);
+    }
+
+    private byte[] read(final InputStream in) throws IOException {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[chunk];
+        final long start = System.nanoTime();
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            body.write(buffer, 0, n);
+            pace(start, body.size());
+        }
+        return body.toByteArray();
+    }
+
+    private void respond(final HttpExchange exchange, final int status, final byte[] body) throws IOException {
+        count(status);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        final long start = System.nanoTime();
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int offset = 0; offset < body.length; offset += chunk) {
+                final int n = Math.min(chunk, body.length - offset);
+                out.write(body, offset, n);
+                pace(start, offset + n);
+            }
+        }
+    }
+
+    // sleeps until `bytes` have taken as long as the bandwidth allows since start
+    private void pace(final long start, final long bytes) {
+        if(config.getBandwidth() > 0) {
+            sleepUntil(start + (long) (bytes * 1e9 / config.getBandwidth()));
+        }
+    }
+
+    private static void sleepUntil(final long deadline) {
+        long left;
+        while ((left = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(left);
+        }
+    }
+
+    private static byte[] error(final String code, final String message) {
+        return String.format("{\"code\":\"%s\",\"message\":\"%s\"}", code, message).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void count(final int status) {
+        statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+    }
+
+    public Map<Integer, Long> getStatuses() {
+        final Map<Integer, Long> counts = new TreeMap<>();
+        statuses.forEach((status, count) -> counts.put(status, count.sum()));
+        return counts;
+    }
+
+    // the most requests processed at once, over-capacity rejections excluded
+    public int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    @Override
+    public void close() {
+        if(server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public String toString() {
+        long total = 0;
+        for (LongAdder count : statuses.values()) {
+            total += count.sum();
+        }
+        return String.format("Mock server: %d requests, statuses %s, max %d in flight", total, getStatuses(),
+                maxInFlight.get());
+    }
+}
@@ -0,0 +1,43 @@
+package com.vassa.mock;
+
+import com.vassa.util.CommandLine;
+
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// mock-server [--port=8098] [--bind=127.0.0.1] [--keys=key.pem|dir] [--latency=lognormal:20,0.5]
+//             [--bandwidth=1m] [--errors=503:0.01,429:0.02] [--max-concurrency=N] [--body-bytes=N]
+//             [--role=USER] [--max-skew=300] [--no-digest-check] [--duration=S]
+// Serves until killed, or for --duration seconds, and prints the status counts at the end. See MockServer.
+public class MockServerCommand {
+
+    public static void run(final String[] args, final PrintStream out) throws Exception {
+        CommandLine commandLine = new CommandLine(args, 1);
+        MockServerConfig config = MockServerConfig.from(commandLine);
+        long durationS = commandLine.longOption("duration", 0);
+        // without TCP_NODELAY headers and body go out in two segments and every keep-alive response waits ~40 ms
+        // for a delayed ACK. The JDK server reads the property once, when it is first used, so it is set before
+        // the server is created, and only here: it is JVM-wide, a program embedding MockServer decides for itself
+        if(System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        MockServer server = new MockServer(config).start();
+        CountDownLatch stopped = new CountDownLatch(1);
+        Thread shutdown = new Thread(() -> {
+            server.close();
+            out.println(server);
+            stopped.countDown();
+        }, "mock-server-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdown);
+        out.println(String.format("Mock server on %s, latency %s, %s", server.getEndpoint(), config.getLatency(),
+                config.getKeys() == null ? "signatures not checked" : "keys from " + config.getKeys()));
+        if(durationS <= 0) {
+            stopped.await();
+            return;
+        }
+        stopped.await(durationS, TimeUnit.SECONDS);
+        Runtime.getRuntime().removeShutdownHook(shutdown);
+        shutdown.run();
+    }
+}
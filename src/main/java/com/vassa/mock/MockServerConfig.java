@@ -0,0 +1,228 @@
+package com.vassa.mock;
+
+import com.vassa.util.CommandLine;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class MockServerConfig {
+
+    public static final int DEFAULT_PORT = 8098;
+
+    private int port = DEFAULT_PORT;
+    private String bind = "127.0.0.1";
+    private Path keys;
+    private long maxSkewMs = 5 * 60_000;
+    private String role = "USER";
+    private int bodyBytes;
+    private LatencyDistribution latency = LatencyDistribution.NONE;
+    private long bandwidth;
+    private Map<Integer, Double> errors = Collections.emptyMap();
+    private int maxConcurrency;
+    private boolean checkDigest = true;
+
+    public static MockServerConfig defaults() {
+        return new MockServerConfig();
+    }
+
+    // --port --bind --keys --max-skew (s) --role --body-bytes --latency --bandwidth (bytes/s, k/m/g)
+    // --errors=500:0.01,429:0.05 --max-concurrency --no-digest-check
+    public static MockServerConfig from(final CommandLine commandLine) {
+        MockServerConfig config = new MockServerConfig()
+                .setPort(commandLine.intOption("port", DEFAULT_PORT))
+                .setBind(commandLine.option("bind", "127.0.0.1"))
+                .setMaxSkewMs(commandLine.longOption("max-skew", 300) * 1000)
+                .setRole(commandLine.option("role", "USER"))
+                .setBodyBytes(commandLine.intOption("body-bytes", 0))
+                .setMaxConcurrency(commandLine.intOption("max-concurrency", 0))
+                .setCheckDigest(!commandLine.has("no-digest-check"));
+        String keys = commandLine.option("keys", null);
+        if(keys != null) {
+            config.setKeys(Paths.get(keys));
+        }
+        String latency = commandLine.option("latency", null);
+        if(latency != null) {
+            config.setLatency(LatencyDistribution.parse(latency));
+        }
+        String bandwidth = commandLine.option("bandwidth", null);
+        if(bandwidth != null) {
+            config.setBandwidth(bytes(bandwidth));
+        }
+        String errors = commandLine.option("errors", null);
+        if(errors != null) {
+            config.setErrors(errors(errors));
+        }
+        return config;
+    }
+
+    private static long bytes(final String value) {
+        String number = value.trim().toLowerCase();
+        long unit = 1;
+        if(number.endsWith("k")) {
+            unit = 1L << 10;
+        } else if(number.endsWith("m")) {
+            unit = 1L << 20;
+        } else if(number.endsWith("g")) {
+            unit = 1L << 30;
+        }
+        try {
+            return Long.parseLong(unit == 1 ? number : number.substring(0, number.length() - 1)) * unit;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bandwidth is not valid: " + value);
+        }
+    }
+
+    // status:probability,...
+    private static Map<Integer, Double> errors(final String value) {
+        Map<Integer, Double> errors = new LinkedHashMap<>();
+        for (String error : value.split(",")) {
+            String[] parts = error.split(":");
+            try {
+                if(parts.length != 2) {
+                    throw new NumberFormatException(error);
+                }
+                errors.put(Integer.parseInt(parts[0].trim()), Double.parseDouble(parts[1].trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Error injection is not valid, expected status:probability: " + error);
+            }
+        }
+        return errors;
+    }
+
+    // 0 picks a free port, see MockServer.getPort
+    public int getPort() {
+        return port;
+    }
+
+    public MockServerConfig setPort(int port) {
+        if(port < 0 || port > 0xFFFF) {
+            throw new IllegalArgumentException("Port is not valid: " + port);
+        }
+        this.port = port;
+        return this;
+    }
+
+    public String getBind() {
+        return bind;
+    }
+
+    public MockServerConfig setBind(String bind) {
+        this.bind = bind;
+        return this;
+    }
+
+    // a key file used for every keyId, or a directory with one file per keyId named like a Keyring; public keys
+    // or RSA private keys, see PrivateKeyUtil.loadPublicKey. null accepts every signature without checking it
+    public Path getKeys() {
+        return keys;
+    }
+
+    public MockServerConfig setKeys(Path keys) {
+        this.keys = keys;
+        return this;
+    }
+
+    // 0 disables the date check
+    public long getMaxSkewMs() {
+        return maxSkewMs;
+    }
+
+    public MockServerConfig setMaxSkewMs(long maxSkewMs) {
+        this.maxSkewMs = Math.max(0, maxSkewMs);
+        return this;
+    }
+
+    // authentication_key.role of a valid request, PUBLIC to exercise the client's public role path
+    public String getRole() {
+        return role;
+    }
+
+    public MockServerConfig setRole(String role) {
+        this.role = role;
+        return this;
+    }
+
+    // the response body is padded to at least this size, for measuring bandwidth and response sinks
+    public int getBodyBytes() {
+        return bodyBytes;
+    }
+
+    public MockServerConfig setBodyBytes(int bodyBytes) {
+        if(bodyBytes < 0) {
+            throw new IllegalArgumentException("Body size is not valid: " + bodyBytes);
+        }
+        this.bodyBytes = bodyBytes;
+        return this;
+    }
+
+    public LatencyDistribution getLatency() {
+        return latency;
+    }
+
+    public MockServerConfig setLatency(LatencyDistribution latency) {
+        this.latency = latency == null ? LatencyDistribution.NONE : latency;
+        return this;
+    }
+
+    // bytes per second of each request and response body, 0 for no limit
+    public long getBandwidth() {
+        return bandwidth;
+    }
+
+    public MockServerConfig setBandwidth(long bandwidth) {
+        if(bandwidth < 0) {
+            throw new IllegalArgumentException("Bandwidth is not valid: " + bandwidth);
+        }
+        this.bandwidth = bandwidth;
+        return this;
+    }
+
+    // probability of answering with each status instead of processing the request; 429 and 503 get a Retry-After
+    public Map<Integer, Double> getErrors() {
+        return errors;
+    }
+
+    public MockServerConfig setErrors(Map<Integer, Double> errors) {
+        double total = 0;
+        for (Map.Entry<Integer, Double> error : errors.entrySet()) {
+            if(error.getKey() < 400 || error.getKey() > 599) {
+                throw new IllegalArgumentException("Error status is not valid: " + error.getKey());
+            }
+            if(error.getValue() < 0 || error.getValue() > 1) {
+                throw new IllegalArgumentException("Error probability is not valid: " + error.getValue());
+            }
+            total += error.getValue();
+        }
+        if(total > 1) {
+            throw new IllegalArgumentException("Error probabilities add up to more than 1: " + total);
+        }
+        this.errors = Collections.unmodifiableMap(new LinkedHashMap<>(errors));
+        return this;
+    }
+
+    // requests over this many in flight get a 503 straight away, 0 for no limit
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public MockServerConfig setMaxConcurrency(int maxConcurrency) {
+        if(maxConcurrency < 0) {
+            throw new IllegalArgumentException("Max concurrency is not valid: " + maxConcurrency);
+        }
+        this.maxConcurrency = maxConcurrency;
+        return this;
+    }
+
+    // a digest header that does not match the body gets a 400
+    public boolean isCheckDigest() {
+        return checkDigest;
+    }
+
+    public MockServerConfig setCheckDigest(boolean checkDigest) {
+        this.checkDigest = checkDigest;
+        return this;
+    }
+}
@@ -0,0 +1,215 @@
+package com.vassa.security;
+
+import com.vassa.domain.Algorithm;
+import com.vassa.util.PrivateKeyUtil;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.interfaces.ECPrivateKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// A directory of private keys, one PEM file per key: the keyId is the file name without its
+// .pem/.key extension. Keys are parsed once, signers are built lazily per (keyId, algorithm) and reused.
+// With watch() rotated files are picked up in the background; a new key replaces the entry atomically
+// so requests already holding the previous Signer finish with it.
+public class Keyring implements Closeable {
+
+    private static final String[] KEY_EXTENSIONS = {".pem", ".key"};
+
+    private final Path directory;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile List<String> keyIds = Collections.emptyList();
+    private volatile WatchService watchService;
+
+    public Keyring(final Path directory) throws IOException {
+        if(!Files.isDirectory(directory)) {
+            throw new IllegalArgumentException("Not a directory: " + directory);
+        }
+        this.directory = directory;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                load(file);
+            }
+        }
+        if(entries.isEmpty()) {
+            throw new IllegalArgumentException("No private keys found in " + directory);
+        }
+    }
+
+    public static boolean isKeyring(final String path) {
+        return path != null && Files.isDirectory(Paths.get(path));
+    }
+
+    // sorted, a new list after every change
+    public List<String> getKeyIds() {
+        return keyIds;
+    }
+
+    public boolean contains(final String keyId) {
+        return entries.containsKey(keyId);
+    }
+
+    public PrivateKey getKey(final String keyId) {
+        return entry(keyId).key;
+    }
+
+    // algorithm null picks the default for the key type, see defaultAlgorithm
+    public Signer signer(final String keyId, final Algorithm algorithm, final List<String> headers) {
+        final Entry entry = entry(keyId);
+        final Algorithm effective = algorithm == null ? entry.defaultAlgorithm : algorithm;
+        final Map<List<String>, Signer> byHeaders =
+                entry.signers.computeIfAbsent(effective, a -> new ConcurrentHashMap<>());
+        return byHeaders.computeIfAbsent(headers,
+                h -> new Signer(entry.key, new SignatureAuth(keyId, effective.getPortableName(), h)));
+    }
+
+    public static Algorithm defaultAlgorithm(final PrivateKey key) {
+        switch (key.getAlgorithm()) {
+            case "RSA":
+                return Algorithm.RSA_SHA256;
+            case "EC":
+                final int fieldSize = ((ECPrivateKey) key).getParams().getCurve().getField().getFieldSize();
+                return fieldSize > 384 ? Algorithm.ECDSA_SHA512 : fieldSize > 256 ? Algorithm.ECDSA_SHA384 : Algorithm.ECDSA_SHA256;
+            case "EdDSA":
+            case "Ed25519":
+                return Algorithm.ED25519;
+            case "DSA":
+                return Algorithm.DSA_SHA256;
+            default:
+                throw new IllegalArgumentException("No default signature algorithm for " + key.getAlgorithm() + " keys");
+        }
+    }
+
+    public synchronized void watch() throws IOException {
+        if(watchService != null) {
+            return;
+        }
+        final WatchService service = directory.getFileSystem().newWatchService();
+        directory.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        watchService = service;
+        final Thread watcher = new Thread(() -> watchLoop(service), "keyring-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if(watchService != null) {
+            watchService.close();
+            watchService = null;
+        }
+    }
+
+    private void watchLoop(final WatchService service) {
+        try {
+            while (true) {
+                final WatchKey watchKey = service.take();
+                for (WatchEvent<?> event : watchKey.pollEvents()) {
+                    if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        reloadAll();
+                        continue;
+                    }
+                    final Path file = directory.resolve((Path) event.context());
+                    if(event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        remove(file);
+                    } else {
+                        load(file);
+                    }
+                }
+                if(!watchKey.reset()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    private void reloadAll() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                load(file);
+            }
+        } catch (IOException e) {
+            System.out.println("Cannot reload keyring " + directory + ": " + e);
+        }
+    }
+
+    private void load(final Path file) {
+        final String keyId = keyId(file);
+        if(keyId == null || !Files.isRegularFile(file)) {
+            return;
+        }
+        try {
+            final PrivateKey key = PrivateKeyUtil.loadPrivateKey(file);
+            final Entry current = entries.get(keyId);
+            if(current != null && Arrays.equals(current.key.getEncoded(), key.getEncoded())) {
+                return;
+            }
+            entries.put(keyId, new Entry(key, defaultAlgorithm(key)));
+            updateKeyIds();
+        } catch (IOException | GeneralSecurityException | IllegalArgumentException e) {
+            // public keys next to private ones, or a file still being written: keep what we have
+            System.out.println("Skipping key file " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void remove(final Path file) {
+        final String keyId = keyId(file);
+        if(keyId != null && entries.remove(keyId) != null) {
+            updateKeyIds();
+        }
+    }
+
+    private synchronized void updateKeyIds() {
+        final List<String> ids = new ArrayList<>(entries.keySet());
+        Collections.sort(ids);
+        keyIds = Collections.unmodifiableList(ids);
+    }
+
+    private Entry entry(final String keyId) {
+        final Entry entry = entries.get(keyId);
+        if(entry == null) {
+            throw new IllegalArgumentException("Key ID not found in keyring: [" + keyId + "]");
+        }
+        return entry;
+    }
+
+    private static String keyId(final Path file) {
+        final String name = file.getFileName().toString();
+        for (String extension : KEY_EXTENSIONS) {
+            if(name.endsWith(extension) && name.length() > extension.length()) {
+                return name.substring(0, name.length() - extension.length());
+            }
+        }
+        return null;
+    }
+
+    private static final class Entry {
+        private final PrivateKey key;
+        private final Algorithm defaultAlgorithm;
+        private final Map<Algorithm, Map<List<String>, Signer>> signers = new ConcurrentHashMap<>();
+
+        private Entry(final PrivateKey key, final Algorithm defaultAlgorithm) {
+            this.key = key;
+            this.defaultAlgorithm = defaultAlgorithm;
+        }
+    }
+}
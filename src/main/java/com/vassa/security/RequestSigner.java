@@ -1,45 +1,164 @@
 package com.vassa.security;
 
+import com.vassa.domain.Algorithm;
+import com.vassa.metrics.FlightEvents;
+import com.vassa.metrics.Metrics;
+import com.vassa.util.CachedClock;
+import org.apache.http.Header;
 import org.apache.http.client.methods.HttpRequestBase;
 
-import java.io.IOException;
 import java.net.URI;
 import java.security.Key;
-import java.time.Instant;
+import java.security.PrivateKey;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class RequestSigner {
 
-    private static final String SIGNATURE_ALGORITHM = "rsa-sha256";
-    private static final List<String> REQUIRED_HEADERS = Arrays.asList("(request-target)", "date", "digest");
+    private static final List<String> REQUIRED_HEADERS = Arrays.asList(SigningTemplate.REQUEST_TARGET, "date", "digest");
+    // signed too when the request has them, so a cached validator cannot be swapped on the way
+    private static final List<String> CONDITIONAL_HEADERS = Arrays.asList("if-none-match", "if-modified-since");
 
+    private final Algorithm algorithm;
+    private final String keyId;
+    private final Key privateKey;
     private final Signer signer;
+    private final Map<List<String>, Signer> conditionalSigners = new ConcurrentHashMap<>();
+    private final Keyring keyring;
+    private final List<String> keyIds;
+    private final AtomicInteger nextKey = new AtomicInteger();
+    private final SignatureCache signatureCache;
 
     public RequestSigner(String keyId, Key privateKey) {
+        this(keyId, privateKey, 0);
+    }
+
+    // signatureCacheSize > 0 memoizes signatures of identical signing strings, see SignatureCache
+    public RequestSigner(String keyId, Key privateKey, long signatureCacheSize) {
+        this(keyId, privateKey, null, signatureCacheSize);
+    }
+
+    // algorithm null picks the default for the key type, rsa-sha256 for RSA keys
+    public RequestSigner(String keyId, Key privateKey, Algorithm algorithm, long signatureCacheSize) {
+        this.algorithm = algorithm != null ? algorithm
+                : privateKey instanceof PrivateKey ? Keyring.defaultAlgorithm((PrivateKey) privateKey) : Algorithm.HMAC_SHA256;
+        this.keyId = keyId;
+        this.privateKey = privateKey;
         this.signer = buildSigner(keyId, privateKey);
+        this.keyring = null;
+        this.keyIds = null;
+        this.signatureCache = signatureCacheSize > 0 ? new SignatureCache(signatureCacheSize) : null;
+    }
+
+    // requests are signed round-robin with keyIds, or with every key of the keyring when keyIds is null
+    public RequestSigner(Keyring keyring, List<String> keyIds, Algorithm algorithm, long signatureCacheSize) {
+        if(keyIds != null) {
+            for (String keyId : keyIds) {
+                if(!keyring.contains(keyId)) {
+                    throw new IllegalArgumentException("Key ID not found in keyring: [" + keyId + "]");
+                }
+            }
+        }
+        this.algorithm = algorithm;
+        this.keyId = null;
+        this.privateKey = null;
+        this.signer = null;
+        this.keyring = keyring;
+        this.keyIds = keyIds;
+        this.signatureCache = signatureCacheSize > 0 ? new SignatureCache(signatureCacheSize) : null;
     }
 
     protected Signer buildSigner(String keyId, Key privateKey) {
-        final SignatureAuth signatureAuth = new SignatureAuth(keyId, SIGNATURE_ALGORITHM, REQUIRED_HEADERS);
+        return buildSigner(keyId, privateKey, REQUIRED_HEADERS);
+    }
+
+    protected Signer buildSigner(String keyId, Key privateKey, List<String> headers) {
+        final SignatureAuth signatureAuth = new SignatureAuth(keyId, algorithm.getPortableName(), headers);
         return new Signer(privateKey, signatureAuth);
     }
 
     public void signRequest(HttpRequestBase request) {
-        final String method = request.getMethod().toLowerCase();
+        signRequest(request, nextKeyId());
+    }
+
+    // the key that signs the next request, for callers that must know it before signing; with a keyring every
+    // call moves the round-robin on
+    public String nextKeyId() {
+        if (keyring == null) {
+            return keyId;
+        }
+        final List<String> ids = keyIds != null ? keyIds : keyring.getKeyIds();
+        return ids.get((nextKey.getAndIncrement() & Integer.MAX_VALUE) % ids.size());
+    }
+
+    // keyId from nextKeyId(), or any key of the keyring
+    public void signRequest(HttpRequestBase request, String keyId) {
+        if (keyring == null && !this.keyId.equals(keyId)) {
+            throw new IllegalArgumentException("Key ID not found: [" + keyId + "]");
+        }
+        final long start = Metrics.start();
+        final Object event = FlightEvents.beginSignRequest();
         final String path = extractPath(request.getURI());
 
         if (!request.containsHeader("Date")) {
-            Instant now = Instant.now();
-            request.addHeader("Date", now.toString());
+            request.addHeader("Date", CachedClock.now());
         }
 
-        final Map<String, String> headers = extractHeadersToSign(request);
-        final String signature = this.calculateSignature(method, path, headers);
-        //System.out.println("Signature: " + signature);
+        final List<String> headers = signedHeaders(request);
+        final Signer current = keyring == null ? signer(headers) : keyring.signer(keyId, algorithm, headers);
+        final String signature = current.signAuthorization(request.getMethod(), path, name -> headerValue(request, name),
+                signatureCache);
         request.setHeader("Authorization", signature);
+        FlightEvents.commitSignRequest(event, request.getMethod(), path, current.getKeyId(),
+                current.getAlgorithm().getPortableName());
+        Metrics.SIGN_REQUEST.stop(start);
+    }
+
+    // signs all the requests in parallel on the signing pool and returns once every one is signed. Each gets
+    // its Date when its own signature is made, so sign a batch right before sending it, not ahead of time.
+    public void signAll(final List<? extends HttpRequestBase> requests) {
+        if (requests.size() <= SignTask.THRESHOLD) {
+            requests.forEach(this::signRequest);
+            return;
+        }
+        signingPool().invoke(new SignTask(requests, 0, requests.size()));
+    }
+
+    // one thread per core, signing is CPU-bound; shared by every signer of the process
+    public static ForkJoinPool signingPool() {
+        return SigningPool.INSTANCE;
+    }
+
+    // null when the cache is disabled
+    public SignatureCache getSignatureCache() {
+        return signatureCache;
+    }
+
+    private Signer signer(final List<String> headers) {
+        if (headers == REQUIRED_HEADERS) {
+            return signer;
+        }
+        return conditionalSigners.computeIfAbsent(headers, h -> buildSigner(keyId, privateKey, h));
+    }
+
+    private static List<String> signedHeaders(final HttpRequestBase request) {
+        List<String> headers = REQUIRED_HEADERS;
+        for (String conditional : CONDITIONAL_HEADERS) {
+            if (request.containsHeader(conditional)) {
+                if (headers == REQUIRED_HEADERS) {
+                    headers = new ArrayList<>(REQUIRED_HEADERS);
+                }
+                headers.add(conditional);
+            }
+        }
+        return headers;
     }
 
     private static String extractPath(URI uri) {
@@ -51,34 +170,51 @@ public class RequestSigner {
         return path;
     }
 
-    private static Map<String, String> extractHeadersToSign(HttpRequestBase request) {
-        List<String> headersToSign = Arrays.asList(request.getAllHeaders()).stream().map(h -> h.getName()).collect(Collectors.toList());
-        if (headersToSign == null) {
-            throw new RuntimeException("Don't know how to sign method " + request.getMethod());
+    private static String headerValue(HttpRequestBase request, String name) {
+        final Header first = request.getFirstHeader(name);
+        if (first == null) {
+            return null;
         }
-        return headersToSign.stream()
-                // (request-target) is a pseudo-header
-                .filter(header -> !header.toLowerCase().equals("(request-target)"))
-                .collect(Collectors.toMap(
-                        header -> header,
-                        header -> {
-                            if (!request.containsHeader(header)) {
-                                throw new RuntimeException("Missing required headers: " + header);
-                            }
-                            if (request.getHeaders(header).length > 1) {
-                                throw new RuntimeException(
-                                        String.format("Expected one value for header %s", header));
-                            }
-                            return request.getFirstHeader(header).getValue();
-                        }));
-    }
-
-    private String calculateSignature(String method, String path, Map<String, String> headers) {
-        try {
-            return signer.sign(method, path, headers).toString();
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to generate signature", e);
+        if (first != request.getLastHeader(name)) {
+            throw new RuntimeException(String.format("Expected one value for header %s", name));
         }
+        return first.getValue();
+    }
+
+    private static final class SigningPool {
+        private static final ForkJoinPool INSTANCE = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+                pool -> {
+                    final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    thread.setName("signer-" + thread.getPoolIndex());
+                    return thread;
+                }, null, false);
     }
 
+    // halves the range until a few requests are left, the signatures are independent of each other
+    private final class SignTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 4;
+
+        private final List<? extends HttpRequestBase> requests;
+        private final int from;
+        private final int to;
+
+        private SignTask(final List<? extends HttpRequestBase> requests, final int from, final int to) {
+            this.requests = requests;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    signRequest(requests.get(i));
+                }
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new SignTask(requests, from, middle), new SignTask(requests, middle, to));
+        }
+    }
 }
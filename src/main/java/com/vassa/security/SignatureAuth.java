@@ -7,6 +7,8 @@ import java.util.stream.Collectors;
 
 public class SignatureAuth {
 
+    private static final String SIGNATURE_PREFIX = "signature ";
+
     private final String keyId;
 
     private final String algorithm;
@@ -36,10 +38,9 @@ public class SignatureAuth {
         this.algorithm = algorithm;
         this.signature = signature;
 
-        if (headers == null || headers.size() == 0) {
-            final List<String> list = new ArrayList<>();
-            System.out.println("Add empty list...");
-            this.headers = Collections.unmodifiableList(list);
+        // an empty list is left for the Verifier to reject, see VerifierConfig.setRequiredHeaders
+        if (headers == null || headers.isEmpty()) {
+            this.headers = Collections.emptyList();
         } else {
             this.headers = Collections.unmodifiableList(lowercase(headers));
         }
@@ -57,8 +58,73 @@ public class SignatureAuth {
         return headers;
     }
 
+    public String getSignature() {
+        return signature;
+    }
+
+    // Parses 'Signature keyId="..",algorithm="..",headers="..",signature=".."' with a single scan, no regex
+    public static SignatureAuth parse(final String authorization) {
+        if (authorization == null || authorization.length() < SIGNATURE_PREFIX.length()) {
+            throw new IllegalArgumentException("Authorization is not a signature: " + authorization);
+        }
+        final String params = normalize(authorization);
+        String keyId = null;
+        String algorithm = null;
+        String headers = null;
+        String signature = null;
+        int i = 0;
+        final int length = params.length();
+        while (i < length) {
+            while (i < length && (params.charAt(i) == ',' || params.charAt(i) == ' ')) {
+                i++;
+            }
+            final int eq = params.indexOf('=', i);
+            if (eq < 0 || eq + 1 >= length || params.charAt(eq + 1) != '"') {
+                throw new IllegalArgumentException("Authorization is malformed: " + authorization);
+            }
+            final int end = params.indexOf('"', eq + 2);
+            if (end < 0) {
+                throw new IllegalArgumentException("Authorization is malformed: " + authorization);
+            }
+            final String name = params.substring(i, eq).trim();
+            final String value = params.substring(eq + 2, end);
+            if ("keyId".equals(name)) {
+                keyId = value;
+            } else if ("algorithm".equals(name)) {
+                algorithm = value;
+            } else if ("headers".equals(name)) {
+                headers = value;
+            } else if ("signature".equals(name)) {
+                signature = value;
+            }
+            i = end + 1;
+        }
+        if (signature == null || signature.isEmpty()) {
+            throw new IllegalArgumentException("signature is required.");
+        }
+        // without a headers parameter only the date is signed
+        final List<String> headerList = headers == null
+                ? Collections.singletonList("date")
+                : splitOnSpaces(headers);
+        return new SignatureAuth(keyId, algorithm, signature, headerList);
+    }
+
+    private static List<String> splitOnSpaces(final String value) {
+        final List<String> list = new ArrayList<>(4);
+        int start = 0;
+        for (int i = 0; i <= value.length(); i++) {
+            if (i == value.length() || value.charAt(i) == ' ') {
+                if (i > start) {
+                    list.add(value.substring(start, i));
+                }
+                start = i + 1;
+            }
+        }
+        return list;
+    }
+
     private static String normalize(String authorization) {
-        final String start = "signature ";
+        final String start = SIGNATURE_PREFIX;
 
         final String prefix = authorization.substring(0, start.length()).toLowerCase();
 
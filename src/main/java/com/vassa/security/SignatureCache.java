@@ -0,0 +1,54 @@
+package com.vassa.security;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.vassa.util.CachedClock;
+
+import java.util.concurrent.TimeUnit;
+
+// Authorization values keyed by the exact signing string. The signing string contains the Date,
+// so an entry can only be hit while that Date is still being sent: entries expire after one
+// tick of the clock that produces the Date, and the least recently used go first when full.
+public class SignatureCache {
+
+    private final Cache<String, String> cache;
+
+    public SignatureCache(final long maximumSize) {
+        if(maximumSize < 1) {
+            throw new IllegalArgumentException("Signature cache size is not valid: " + maximumSize);
+        }
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(CachedClock.GRANULARITY_MS, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+    }
+
+    String get(final String signingString) {
+        return cache.getIfPresent(signingString);
+    }
+
+    void put(final String signingString, final String authorization) {
+        cache.put(signingString, authorization);
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    @Override
+    public String toString() {
+        CacheStats stats = cache.stats();
+        return String.format("Signature cache: %d hits, %d misses (%.1f%% hit rate), %d entries",
+                stats.hitCount(), stats.missCount(), stats.hitRate() * 100, cache.size());
+    }
+}
@@ -1,44 +1,48 @@
 package com.vassa.security;
 
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.List;
+import java.util.Map;
 
 public class Signatures {
 
     public static String createSigningString(final List<String> required, String method, final String uri, Map<String, String> headers) {
-        headers = lowercase(headers);
-
-        final List<String> list = new ArrayList<>(required.size());
+        final StringBuilder sb = new StringBuilder(128);
 
         for (final String key : required) {
-            if ("(request-target)".equals(key)) {
+            if (sb.length() > 0) {
+                sb.append('\n');
+            }
+            if (SigningTemplate.REQUEST_TARGET.equals(key)) {
                 method = lowercase(method);
-                String collect = Arrays.asList("(request-target):", method, uri).stream().collect(Collectors.joining(" "));
-                list.add(collect);
+                sb.append(SigningTemplate.REQUEST_TARGET).append(": ").append(method).append(' ').append(uri);
             } else {
-                final String value = headers.get(key);
+                final String value = get(headers, key);
                 if (value == null) {
-                    System.out.println("Missing required headers: " + key);
-                    throw new RuntimeException("Missing required headers...");
+                    throw new IllegalArgumentException("Missing required header: " + key);
                 }
 
-                list.add(key + ": " + value);
+                sb.append(key).append(": ").append(value);
             }
         }
 
-        return list.stream().collect(Collectors.joining("\n"));
+        return sb.toString();
     }
 
-    private static Map<String, String> lowercase(final Map<String, String> headers) {
-        final Map<String, String> map = new HashMap<>();
+    // required header names are lowercase, incoming ones may not be
+    private static String get(final Map<String, String> headers, final String key) {
+        final String value = headers.get(key);
+        if (value != null) {
+            return value;
+        }
         for (final Map.Entry<String, String> entry : headers.entrySet()) {
-            map.put(entry.getKey().toLowerCase(), entry.getValue());
+            if (key.equalsIgnoreCase(entry.getKey())) {
+                return entry.getValue();
+            }
         }
-        return map;
+        return null;
     }
 
     private static String lowercase(final String spec) {
         return spec.toLowerCase();
     }
 }
-
@@ -1,7 +1,9 @@
 package com.vassa.security;
 
 import com.vassa.domain.Algorithm;
-import org.apache.commons.codec.binary.Base64;
+import com.vassa.domain.AlgorithmRegistry;
+import com.vassa.metrics.FlightEvents;
+import com.vassa.metrics.Metrics;
 
 import javax.crypto.Mac;
 import java.io.IOException;
@@ -11,6 +13,7 @@ import java.security.Key;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.Signature;
+import java.util.Base64;
 import java.util.Map;
 
 import static java.util.Objects.requireNonNull;
@@ -20,6 +23,7 @@ public class Signer {
     private final Sign sign;
     private final SignatureAuth signatureAuth;
     private final Algorithm algorithm;
+    private final SigningTemplate template;
 
     private static final Charset CHARSET_UTF8 = StandardCharsets.UTF_8;
 
@@ -28,6 +32,7 @@ public class Signer {
         this.signatureAuth = requireNonNull(signatureAuth, "Signature cannot be null");
         final String algorithmName = signatureAuth.getAlgorithm();
         this.algorithm = Algorithm.get(algorithmName);
+        this.template = new SigningTemplate(signatureAuth, algorithm.getPortableName());
 
         if (java.security.Signature.class.equals(algorithm.getType())) {
             this.sign = new Asymmetric(PrivateKey.class.cast(key));
@@ -38,7 +43,8 @@ public class Signer {
         }
 
         try {
-            sign.sign("validation".getBytes());
+            final byte[] validation = "validation".getBytes(CHARSET_UTF8);
+            sign.sign(validation, 0, validation.length);
         } catch (final RuntimeException e) {
             throw (RuntimeException) e;
         } catch (final Exception e) {
@@ -49,9 +55,14 @@ public class Signer {
     public SignatureAuth sign(final String method, final String uri, final Map<String, String> headers) throws IOException {
         final String signingString = createSigningString(method, uri, headers);
 
-        final byte[] binarySignature = sign.sign(signingString.getBytes(CHARSET_UTF8));
+        final byte[] signingBytes = signingString.getBytes(CHARSET_UTF8);
+        final long start = Metrics.start();
+        final Object event = FlightEvents.beginSignature();
+        final byte[] binarySignature = sign.sign(signingBytes, 0, signingBytes.length);
+        FlightEvents.commitSignature(event, algorithm.getPortableName(), signatureAuth.getKeyId(), signingBytes.length);
+        Metrics.SIGNATURE.stop(start);
 
-        final byte[] encoded = Base64.encodeBase64(binarySignature);
+        final byte[] encoded = Base64.getEncoder().encode(binarySignature);
 
         final String signedAndEncodedString = new String(encoded, CHARSET_UTF8);
 
@@ -60,57 +71,138 @@ public class Signer {
                 signedAndEncodedString, signatureAuth.getHeaders());
     }
 
+    public String signAuthorization(final String method, final String uri, final SigningTemplate.HeaderSource headers) {
+        return signAuthorization(method, uri, headers, null);
+    }
+
+    public String signAuthorization(final String method, final String uri, final SigningTemplate.HeaderSource headers,
+                                    final SignatureCache cache) {
+        final SigningBuffer buffer = SigningBuffer.get();
+        template.writeSigningString(buffer, method, uri, headers);
+
+        String cacheKey = null;
+        if (cache != null) {
+            cacheKey = template.cacheKey(buffer);
+            final String cached = cache.get(cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        final long start = Metrics.start();
+        final Object event = FlightEvents.beginSignature();
+        final byte[] binarySignature = sign.sign(buffer.bytes(), 0, buffer.length());
+        FlightEvents.commitSignature(event, algorithm.getPortableName(), signatureAuth.getKeyId(), buffer.length());
+        Metrics.SIGNATURE.stop(start);
+
+        final byte[] encoded = buffer.scratch((binarySignature.length + 2) / 3 * 4);
+        final int length = Base64.getEncoder().encode(binarySignature, encoded);
+        final String authorization = template.authorization(encoded, length);
+        if (cache != null) {
+            cache.put(cacheKey, authorization);
+        }
+        return authorization;
+    }
+
     public String createSigningString(final String method, final String uri, final Map<String, String> headers) throws IOException {
         return Signatures.createSigningString(signatureAuth.getHeaders(), method, uri, headers);
     }
 
+    public String getKeyId() {
+        return signatureAuth.getKeyId();
+    }
+
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public SigningTemplate getTemplate() {
+        return template;
+    }
+
     private interface Sign {
-        byte[] sign(byte[] signingStringBytes);
+        byte[] sign(byte[] signingStringBytes, int offset, int length);
     }
 
     private class Asymmetric implements Sign {
 
         private final PrivateKey key;
+        // Signature is stateful, so every thread keeps its own engine, initialised once with the key.
+        // After sign() the engine is back in the state left by initSign and can be reused as is.
+        private final ThreadLocal<Signature> engines = ThreadLocal.withInitial(this::newEngine);
 
         public Asymmetric(final PrivateKey key) {
             this.key = key;
         }
 
-        @Override
-        public byte[] sign(final byte[] signingStringBytes) {
+        private Signature newEngine() {
             try {
-                final Signature instance = Signature.getInstance(algorithm.getJvmName());
+                final Signature instance = AlgorithmRegistry.newSignature(algorithm);
                 instance.initSign(key);
-                instance.update(signingStringBytes);
-                return instance.sign();
+                return instance;
             } catch (final NoSuchAlgorithmException e) {
                 throw new RuntimeException("Unsupported algorithm: " + algorithm);
             } catch (final Exception e) {
                 throw new IllegalStateException(e);
             }
         }
+
+        @Override
+        public byte[] sign(final byte[] signingStringBytes, final int offset, final int length) {
+            final Signature instance = engines.get();
+            try {
+                instance.update(signingStringBytes, offset, length);
+                return instance.sign();
+            } catch (final Exception e) {
+                engines.remove();
+                throw new IllegalStateException(e);
+            }
+        }
     }
 
     private class Symmetric implements Sign {
 
         private final Key key;
+        private final Mac prototype;
+        private final ThreadLocal<Mac> engines = ThreadLocal.withInitial(this::newEngine);
 
         private Symmetric(final Key key) {
             this.key = key;
+            this.prototype = initMac();
         }
 
-        @Override
-        public byte[] sign(final byte[] signingStringBytes) {
+        private Mac initMac() {
             try {
-                final Mac mac = Mac.getInstance(algorithm.getJvmName());
+                final Mac mac = AlgorithmRegistry.newMac(algorithm);
                 mac.init(key);
-                return mac.doFinal(signingStringBytes);
+                return mac;
             } catch (final NoSuchAlgorithmException e) {
                 throw new RuntimeException("Unsupported algorithm: " + algorithm);
             } catch (final Exception e) {
                 throw new IllegalStateException(e);
             }
         }
+
+        // Cloning the keyed prototype skips both the provider lookup and the key schedule.
+        private Mac newEngine() {
+            try {
+                return (Mac) prototype.clone();
+            } catch (final CloneNotSupportedException e) {
+                return initMac();
+            }
+        }
+
+        @Override
+        public byte[] sign(final byte[] signingStringBytes, final int offset, final int length) {
+            final Mac mac = engines.get();
+            try {
+                mac.update(signingStringBytes, offset, length);
+                return mac.doFinal();
+            } catch (final Exception e) {
+                engines.remove();
+                throw new IllegalStateException(e);
+            }
+        }
     }
 
 }
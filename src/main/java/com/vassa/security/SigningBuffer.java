@@ -0,0 +1,81 @@
+package com.vassa.security;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+final class SigningBuffer {
+
+    private static final int INITIAL_CAPACITY = 512;
+    private static final ThreadLocal<SigningBuffer> BUFFERS = ThreadLocal.withInitial(SigningBuffer::new);
+
+    private byte[] bytes = new byte[INITIAL_CAPACITY];
+    private int length;
+    private byte[] scratch = new byte[INITIAL_CAPACITY];
+
+    static SigningBuffer get() {
+        SigningBuffer buffer = BUFFERS.get();
+        buffer.length = 0;
+        return buffer;
+    }
+
+    byte[] bytes() {
+        return bytes;
+    }
+
+    int length() {
+        return length;
+    }
+
+    byte[] scratch(final int size) {
+        if(scratch.length < size) {
+            scratch = new byte[Math.max(size, scratch.length * 2)];
+        }
+        return scratch;
+    }
+
+    SigningBuffer append(final byte[] value) {
+        ensure(value.length);
+        System.arraycopy(value, 0, bytes, length, value.length);
+        length += value.length;
+        return this;
+    }
+
+    SigningBuffer append(final byte value) {
+        ensure(1);
+        bytes[length++] = value;
+        return this;
+    }
+
+    SigningBuffer append(final String value) {
+        return append(value, false);
+    }
+
+    SigningBuffer appendLowercase(final String value) {
+        return append(value, true);
+    }
+
+    private SigningBuffer append(final String value, final boolean lowercase) {
+        final int size = value.length();
+        ensure(size);
+        for (int i = 0; i < size; i++) {
+            char c = value.charAt(i);
+            if(c >= 0x80) {
+                // rare non-ASCII value: rewind and let the JDK do the UTF-8 encoding
+                length -= i;
+                String rest = lowercase ? value.toLowerCase() : value;
+                return append(rest.getBytes(StandardCharsets.UTF_8));
+            }
+            if(lowercase && c >= 'A' && c <= 'Z') {
+                c = (char) (c + ('a' - 'A'));
+            }
+            bytes[length++] = (byte) c;
+        }
+        return this;
+    }
+
+    private void ensure(final int extra) {
+        if(length + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(length + extra, bytes.length * 2));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.vassa.security;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class SigningTemplate {
+
+    public static final String REQUEST_TARGET = "(request-target)";
+
+    private static final byte NEW_LINE = '\n';
+    private static final byte SPACE = ' ';
+
+    private final List<String> headers;
+    private final byte[][] linePrefixes;
+    private final String authorizationPrefix;
+
+    public SigningTemplate(final SignatureAuth signatureAuth, final String portableAlgorithm) {
+        this.headers = signatureAuth.getHeaders();
+        this.linePrefixes = new byte[headers.size()][];
+        for (int i = 0; i < headers.size(); i++) {
+            linePrefixes[i] = (headers.get(i) + ": ").getBytes(StandardCharsets.UTF_8);
+        }
+        this.authorizationPrefix = "Signature " +
+                "keyId=\"" + signatureAuth.getKeyId() + '\"' +
+                ",algorithm=\"" + portableAlgorithm + '\"' +
+                ",headers=\"" + String.join(" ", headers) + '\"' +
+                ",signature=\"";
+    }
+
+    public List<String> getHeaders() {
+        return headers;
+    }
+
+    void writeSigningString(final SigningBuffer buffer, final String method, final String uri,
+                            final HeaderSource source) {
+        for (int i = 0; i < linePrefixes.length; i++) {
+            if(i > 0) {
+                buffer.append(NEW_LINE);
+            }
+            final String header = headers.get(i);
+            buffer.append(linePrefixes[i]);
+            if(REQUEST_TARGET.equals(header)) {
+                buffer.appendLowercase(method).append(SPACE).append(uri);
+            } else {
+                final String value = source.get(header);
+                if (value == null) {
+                    throw new RuntimeException("Missing required headers: " + header);
+                }
+                buffer.append(value);
+            }
+        }
+    }
+
+    // unique per key, algorithm, header list and signing string
+    String cacheKey(final SigningBuffer buffer) {
+        return authorizationPrefix + new String(buffer.bytes(), 0, buffer.length(), StandardCharsets.UTF_8);
+    }
+
+    String authorization(final byte[] encodedSignature, final int length) {
+        final StringBuilder sb = new StringBuilder(authorizationPrefix.length() + length + 1);
+        sb.append(authorizationPrefix);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) encodedSignature[i]);
+        }
+        return sb.append('\"').toString();
+    }
+
+    public interface HeaderSource {
+        // name is always lowercase
+        String get(String name);
+    }
+}
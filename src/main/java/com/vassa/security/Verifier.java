@@ -0,0 +1,233 @@
+package com.vassa.security;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.vassa.domain.Algorithm;
+import com.vassa.domain.AlgorithmRegistry;
+
+import javax.crypto.Mac;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+// Receiving side of RequestSigner. Safe to share across threads: keys are cached per keyId and every
+// thread keeps its own initialised Signature/Mac per key and algorithm.
+public class Verifier {
+
+    public enum Result {
+        VALID,
+        MALFORMED,
+        UNSUPPORTED_ALGORITHM,
+        MISSING_HEADER,
+        // the signature leaves out a header the config requires, or signs no header at all
+        UNSIGNED_HEADER,
+        DATE_SKEW,
+        UNKNOWN_KEY,
+        INVALID_SIGNATURE
+    }
+
+    public interface KeyResolver {
+        // null when the keyId is unknown
+        Key resolve(String keyId) throws Exception;
+    }
+
+    private static final VerificationKey UNKNOWN = new VerificationKey(null);
+    private static final long DEFAULT_VERIFIED_EXPIRY_MS = 60_000;
+
+    private final KeyResolver resolver;
+    private final long maxSkewMs;
+    private final List<String> requiredHeaders;
+    private final Cache<String, VerificationKey> keys;
+    private final Cache<String, Boolean> verified;
+
+    public Verifier(final KeyResolver resolver) {
+        this(resolver, VerifierConfig.defaults());
+    }
+
+    public Verifier(final KeyResolver resolver, final VerifierConfig config) {
+        if (resolver == null) {
+            throw new IllegalArgumentException("Key resolver is required");
+        }
+        this.resolver = resolver;
+        this.maxSkewMs = config.getMaxSkewMs();
+        this.requiredHeaders = config.getRequiredHeaders();
+        this.keys = CacheBuilder.newBuilder()
+                .maximumSize(config.getKeyCacheSize())
+                .expireAfterAccess(config.getKeyCacheExpiryMs(), TimeUnit.MILLISECONDS)
+                .build();
+        // a verified signature can only be replayed while its date is inside the skew window
+        this.verified = config.getVerifiedCacheSize() > 0
+                ? CacheBuilder.newBuilder()
+                    .maximumSize(config.getVerifiedCacheSize())
+                    .expireAfterWrite(maxSkewMs > 0 ? maxSkewMs : DEFAULT_VERIFIED_EXPIRY_MS, TimeUnit.MILLISECONDS)
+                    .<String, Boolean>build()
+                : null;
+    }
+
+    public Result verify(final String method, final String uri, final Map<String, String> headers,
+                         final String authorization) {
+        final SignatureAuth auth;
+        try {
+            auth = SignatureAuth.parse(authorization);
+        } catch (IllegalArgumentException e) {
+            return Result.MALFORMED;
+        }
+        final Algorithm algorithm = Algorithm.get(auth.getAlgorithm());
+        if (algorithm == null) {
+            return Result.UNSUPPORTED_ALGORITHM;
+        }
+        // an explicitly empty list signs the empty string, which fits any request
+        if (auth.getHeaders().isEmpty() || !auth.getHeaders().containsAll(requiredHeaders)) {
+            return Result.UNSIGNED_HEADER;
+        }
+        // an unsigned Date is whatever the sender wants it to be, only a signed one bounds a replay
+        if (maxSkewMs > 0 && auth.getHeaders().contains("date") && !isDateInWindow(value(headers, "date"))) {
+            return Result.DATE_SKEW;
+        }
+        // checked up front so a bad request never reaches the exception path of createSigningString
+        for (final String header : auth.getHeaders()) {
+            if (!SigningTemplate.REQUEST_TARGET.equals(header) && value(headers, header) == null) {
+                return Result.MISSING_HEADER;
+            }
+        }
+        final String signingString = Signatures.createSigningString(auth.getHeaders(), method, uri, headers);
+
+        String verifiedKey = null;
+        if (verified != null) {
+            // keyId first, so invalidate() finds the entries of a key
+            verifiedKey = auth.getKeyId() + '\n' + authorization + '\n' + signingString;
+            if (verified.getIfPresent(verifiedKey) != null) {
+                return Result.VALID;
+            }
+        }
+
+        final VerificationKey key = lookup(auth.getKeyId());
+        if (key.key == null) {
+            return Result.UNKNOWN_KEY;
+        }
+        final byte[] signature;
+        try {
+            signature = Base64.getDecoder().decode(auth.getSignature());
+        } catch (IllegalArgumentException e) {
+            return Result.MALFORMED;
+        }
+        final boolean valid = key.verify(algorithm, signingString.getBytes(StandardCharsets.UTF_8), signature);
+        if (!valid) {
+            return Result.INVALID_SIGNATURE;
+        }
+        if (verified != null) {
+            verified.put(verifiedKey, Boolean.TRUE);
+        }
+        return Result.VALID;
+    }
+
+    // a revoked key: its signatures are no longer valid, verified before or not
+    public void invalidate(final String keyId) {
+        keys.invalidate(keyId);
+        if (verified != null) {
+            final String prefix = keyId + '\n';
+            verified.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+        }
+    }
+
+    private VerificationKey lookup(final String keyId) {
+        try {
+            return keys.get(keyId, () -> {
+                final Key key = resolver.resolve(keyId);
+                return key == null ? UNKNOWN : new VerificationKey(key);
+            });
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Cannot resolve key " + keyId, e.getCause());
+        }
+    }
+
+    private boolean isDateInWindow(final String date) {
+        if (date == null) {
+            return false;
+        }
+        try {
+            final long millis = parseDate(date);
+            return Math.abs(System.currentTimeMillis() - millis) <= maxSkewMs;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    // RequestSigner sends ISO-8601 instants, other clients the RFC 1123 HTTP date
+    private static long parseDate(final String date) {
+        if (!date.isEmpty() && Character.isDigit(date.charAt(0))) {
+            return Instant.parse(date).toEpochMilli();
+        }
+        return ZonedDateTime.parse(date, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+    }
+
+    private static String value(final Map<String, String> headers, final String name) {
+        final String value = headers.get(name);
+        if (value != null) {
+            return value;
+        }
+        for (final Map.Entry<String, String> entry : headers.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static final class VerificationKey {
+
+        private final Key key;
+        private final ThreadLocal<Map<Algorithm, Object>> engines =
+                ThreadLocal.withInitial(() -> new EnumMap<>(Algorithm.class));
+
+        private VerificationKey(final Key key) {
+            this.key = key;
+        }
+
+        private boolean verify(final Algorithm algorithm, final byte[] signingString, final byte[] signature) {
+            final Map<Algorithm, Object> perThread = engines.get();
+            try {
+                Object engine = perThread.get(algorithm);
+                if (engine == null) {
+                    engine = newEngine(algorithm);
+                    perThread.put(algorithm, engine);
+                }
+                if (engine instanceof Mac) {
+                    final byte[] expected = ((Mac) engine).doFinal(signingString);
+                    return MessageDigest.isEqual(expected, signature);
+                }
+                final Signature instance = (Signature) engine;
+                instance.update(signingString);
+                return instance.verify(signature);
+            } catch (GeneralSecurityException | ClassCastException e) {
+                // wrong key type for the algorithm or a signature that is not even well-formed
+                perThread.remove(algorithm);
+                return false;
+            }
+        }
+
+        private Object newEngine(final Algorithm algorithm) throws GeneralSecurityException {
+            if (Mac.class.equals(algorithm.getType())) {
+                final Mac mac = AlgorithmRegistry.newMac(algorithm);
+                mac.init(key);
+                return mac;
+            }
+            final Signature signature = AlgorithmRegistry.newSignature(algorithm);
+            signature.initVerify((PublicKey) key);
+            return signature;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.vassa.security;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class VerifierConfig {
+
+    // what RequestSigner signs: without them a signature can be replayed on another path, body or day
+    public static final List<String> DEFAULT_REQUIRED_HEADERS = Collections.unmodifiableList(
+            Arrays.asList(SigningTemplate.REQUEST_TARGET, "date", "digest"));
+
+    private long keyCacheSize = 10_000;
+    private long keyCacheExpiryMs = 10 * 60_000;
+    private long maxSkewMs = 5 * 60_000;
+    private long verifiedCacheSize;
+    private List<String> requiredHeaders = DEFAULT_REQUIRED_HEADERS;
+
+    public static VerifierConfig defaults() {
+        return new VerifierConfig();
+    }
+
+    public long getKeyCacheSize() {
+        return keyCacheSize;
+    }
+
+    public VerifierConfig setKeyCacheSize(long keyCacheSize) {
+        if(keyCacheSize < 1) {
+            throw new IllegalArgumentException("Key cache size is not valid: " + keyCacheSize);
+        }
+        this.keyCacheSize = keyCacheSize;
+        return this;
+    }
+
+    // resolved keys (and unknown keyIds) are looked up again after this long without use
+    public long getKeyCacheExpiryMs() {
+        return keyCacheExpiryMs;
+    }
+
+    public VerifierConfig setKeyCacheExpiryMs(long keyCacheExpiryMs) {
+        this.keyCacheExpiryMs = keyCacheExpiryMs;
+        return this;
+    }
+
+    // 0 disables the date check
+    public long getMaxSkewMs() {
+        return maxSkewMs;
+    }
+
+    public VerifierConfig setMaxSkewMs(long maxSkewMs) {
+        this.maxSkewMs = Math.max(0, maxSkewMs);
+        return this;
+    }
+
+    // 0 disables the cache of recently verified signatures
+    public long getVerifiedCacheSize() {
+        return verifiedCacheSize;
+    }
+
+    public VerifierConfig setVerifiedCacheSize(long verifiedCacheSize) {
+        this.verifiedCacheSize = Math.max(0, verifiedCacheSize);
+        return this;
+    }
+
+    // every one of these must be in the headers list of a signature, lowercase
+    public List<String> getRequiredHeaders() {
+        return requiredHeaders;
+    }
+
+    public VerifierConfig setRequiredHeaders(List<String> requiredHeaders) {
+        final List<String> lowercase = new ArrayList<>(requiredHeaders.size());
+        for (String header : requiredHeaders) {
+            lowercase.add(header.toLowerCase());
+        }
+        this.requiredHeaders = Collections.unmodifiableList(lowercase);
+        return this;
+    }
+}
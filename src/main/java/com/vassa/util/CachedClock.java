@@ -0,0 +1,38 @@
+package com.vassa.util;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+
+public class CachedClock {
+
+    public static final long GRANULARITY_MS = 1000;
+
+    private static volatile Tick current = new Tick(-1, null);
+
+    private CachedClock() {
+    }
+
+    public static String now() {
+        return at(System.currentTimeMillis() / GRANULARITY_MS);
+    }
+
+    public static String at(final long epochSecond) {
+        Tick tick = current;
+        if(tick.epochSecond != epochSecond) {
+            // racing threads may format the same second twice, which is harmless
+            tick = new Tick(epochSecond, DateTimeFormatter.ISO_INSTANT.format(Instant.ofEpochSecond(epochSecond)));
+            current = tick;
+        }
+        return tick.text;
+    }
+
+    private static final class Tick {
+        private final long epochSecond;
+        private final String text;
+
+        private Tick(final long epochSecond, final String text) {
+            this.epochSecond = epochSecond;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.vassa.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Positional arguments plus "--name=value" options and "--flag" switches.
+public class CommandLine {
+
+    private static final String OPTION_PREFIX = "--";
+
+    private final List<String> positional = new ArrayList<>();
+    private final Map<String, String> options = new HashMap<>();
+
+    public CommandLine(final String[] args, final int from) {
+        for (int i = from; i < args.length; i++) {
+            String arg = args[i];
+            if(arg.startsWith(OPTION_PREFIX) && arg.length() > OPTION_PREFIX.length()) {
+                int eq = arg.indexOf('=');
+                if(eq < 0) {
+                    options.put(arg.substring(OPTION_PREFIX.length()), "true");
+                } else {
+                    options.put(arg.substring(OPTION_PREFIX.length(), eq), arg.substring(eq + 1));
+                }
+            } else {
+                positional.add(arg);
+            }
+        }
+    }
+
+    public int positionalCount() {
+        return positional.size();
+    }
+
+    public String positional(final int index) {
+        if(index >= positional.size()) {
+            throw new IllegalArgumentException("Missing parameter at position " + (index + 1));
+        }
+        return positional.get(index);
+    }
+
+    public String[] positionalArgs() {
+        return positional.toArray(new String[0]);
+    }
+
+    public String positional(final int index, final String defaultValue) {
+        return index < positional.size() ? positional.get(index) : defaultValue;
+    }
+
+    public boolean has(final String name) {
+        return options.containsKey(name);
+    }
+
+    public String option(final String name, final String defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : value;
+    }
+
+    public int intOption(final String name, final int defaultValue) {
+        String value = options.get(name);
+        try {
+            return value == null ? defaultValue : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option --" + name + " is not a number: " + value);
+        }
+    }
+
+    public long longOption(final String name, final long defaultValue) {
+        String value = options.get(name);
+        try {
+            return value == null ? defaultValue : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option --" + name + " is not a number: " + value);
+        }
+    }
+
+    public double doubleOption(final String name, final double defaultValue) {
+        String value = options.get(name);
+        try {
+            return value == null ? defaultValue : Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option --" + name + " is not a number: " + value);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.vassa.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+// The jdk.jfr side of FlightEvents, loaded by reflection only when a recording is wanted, see FlightEvents.
+// The listener tells FlightEvents whether any recording runs, so no event class is loaded before one does. An
+// event is only allocated for real when its type is enabled, otherwise the JIT drops the probe together with
+// isEnabled().
+final class JfrEvents implements FlightEvents.Probes {
+
+    private static final String CATEGORY = "Satiscript";
+
+    @Override
+    public void watchRecordings() {
+        // called at once when the recorder is already up, e.g. with -XX:StartFlightRecording
+        FlightRecorder.addListener(new FlightRecorderListener() {
+            @Override
+            public void recorderInitialized(final FlightRecorder recorder) {
+                update(recorder);
+            }
+
+            @Override
+            public void recordingStateChanged(final Recording recording) {
+                update(FlightRecorder.getFlightRecorder());
+            }
+        });
+    }
+
+    private static void update(final FlightRecorder recorder) {
+        boolean running = false;
+        for (Recording recording : recorder.getRecordings()) {
+            running |= recording.getState() == RecordingState.RUNNING;
+        }
+        FlightEvents.setRecording(running);
+    }
+
+    @Override
+    public Object beginSignature() {
+        final SignatureEvent event = new SignatureEvent();
+        if(!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void commitSignature(final Object token, final String algorithm, final String keyId, final int bytes) {
+        final SignatureEvent event = (SignatureEvent) token;
+        event.end();
+        if(event.shouldCommit()) {
+            event.algorithm = algorithm;
+            event.keyId = keyId;
+            event.bytesSigned = bytes;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginDigest() {
+        final DigestEvent event = new DigestEvent();
+        if(!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void commitDigest(final Object token, final String algorithm, final long payloadBytes) {
+        final DigestEvent event = (DigestEvent) token;
+        event.end();
+        if(event.shouldCommit()) {
+            event.algorithm = algorithm;
+            event.payloadSize = payloadBytes;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginSignRequest() {
+        final SignRequestEvent event = new SignRequestEvent();
+        if(!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void commitSignRequest(final Object token, final String method, final String target, final String keyId,
+                                  final String algorithm) {
+        final SignRequestEvent event = (SignRequestEvent) token;
+        event.end();
+        if(event.shouldCommit()) {
+            event.method = method;
+            event.target = target;
+            event.keyId = keyId;
+            event.algorithm = algorithm;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginApiCall() {
+        final ApiCallEvent event = new ApiCallEvent();
+        if(!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void commitApiCall(final Object token, final String method, final String target, final int status,
+                              final long poolWaitNanos, final long timeToFirstByteNanos) {
+        final ApiCallEvent event = (ApiCallEvent) token;
+        event.end();
+        if(event.shouldCommit()) {
+            event.method = method;
+            event.target = target;
+            event.status = status;
+            event.poolWait = poolWaitNanos;
+            event.timeToFirstByte = timeToFirstByteNanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Closeable startRecording(final Path file) throws IOException {
+        final Recording recording;
+        try {
+            recording = new Recording(Configuration.getConfiguration("profile"));
+        } catch (ParseException e) {
+            throw new IOException("Cannot read the JFR profile settings: " + e, e);
+        }
+        recording.setName("satiscript");
+        recording.setToDisk(true);
+        recording.setDestination(file);
+        recording.enable(SignatureEvent.class).withoutStackTrace();
+        recording.enable(DigestEvent.class).withoutStackTrace();
+        recording.enable(SignRequestEvent.class).withoutStackTrace();
+        recording.enable(ApiCallEvent.class).withoutStackTrace();
+        recording.start();
+        // stop() writes the destination file
+        return () -> {
+            recording.stop();
+            recording.close();
+        };
+    }
+
+    @Name("com.vassa.satiscript.Signature")
+    @Label("Signature")
+    @Category(CATEGORY)
+    @Description("Private key or HMAC operation inside Signer")
+    @StackTrace(false)
+    static final class SignatureEvent extends Event {
+        @Label("Algorithm")
+        String algorithm;
+        @Label("Key ID")
+        String keyId;
+        @Label("Bytes Signed")
+        @DataAmount
+        int bytesSigned;
+    }
+
+    @Name("com.vassa.satiscript.Digest")
+    @Label("Payload Digest")
+    @Category(CATEGORY)
+    @Description("Digest header computation over the payload")
+    @StackTrace(false)
+    static final class DigestEvent extends Event {
+        @Label("Algorithm")
+        String algorithm;
+        @Label("Payload Size")
+        @DataAmount
+        long payloadSize;
+    }
+
+    @Name("com.vassa.satiscript.SignRequest")
+    @Label("Sign Request")
+    @Category(CATEGORY)
+    @Description("RequestSigner.signRequest: Date header, signing string, signature, Authorization header")
+    @StackTrace(false)
+    static final class SignRequestEvent extends Event {
+        @Label("Method")
+        String method;
+        @Label("Target")
+        String target;
+        @Label("Key ID")
+        String keyId;
+        @Label("Algorithm")
+        String algorithm;
+    }
+
+    @Name("com.vassa.satiscript.ApiCall")
+    @Label("API Call")
+    @Category(CATEGORY)
+    @Description("Blocking ApiClient call: sign, send and read the response")
+    @StackTrace(false)
+    static final class ApiCallEvent extends Event {
+        @Label("Method")
+        String method;
+        @Label("Target")
+        String target;
+        @Label("Status")
+        int status;
+        @Label("Pool Wait")
+        @Timespan
+        long poolWait;
+        @Label("Time To First Byte")
+        @Timespan
+        long timeToFirstByte;
+    }
+}